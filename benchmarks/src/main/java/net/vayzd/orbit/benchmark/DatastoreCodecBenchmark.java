@@ -0,0 +1,133 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.benchmark;
+
+import net.vayzd.orbit.datastore.*;
+import net.vayzd.orbit.datastore.group.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import static net.vayzd.orbit.datastore.DatastoreFixtures.*;
+
+/**
+ * Decoding of subjects read through JDBC compared to subjects and groups
+ * encoded by the {@link DatastoreCodec}.
+ * <p>
+ * The JDBC path includes the query against the in-memory backend, since its
+ * rows can't be decoded without it. Subjects hold a few nodes out of a pool
+ * shared by all of them, groups are shaped like the ones of real servers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DatastoreCodecBenchmark {
+
+    private static final int NODE_POOL_SIZE = 200;
+    private static final int NODES_PER_SUBJECT = 10;
+    private static final int GROUPS = 64;
+    private static final int NODES_PER_GROUP = 160;
+
+    @Param({"100", "1000"})
+    private int subjectCount;
+
+    private Datastore datastore;
+    private List<DatastoreSubject> subjectList;
+    private byte[] encodedSubjects;
+    private byte[] encodedGroups;
+
+    @Setup
+    public void setUp() throws Exception {
+        DatastoreSettings settings = new DatastoreSettings();
+        // every lookup has to go through JDBC
+        settings.setSubjectCacheSize(0);
+        datastore = OrbitDatastore.newDatastore(Logger.getLogger("Benchmark"), new MemoryBackend(),
+                new Thread(), 2, settings);
+        CompletableFuture<Boolean> connected = new CompletableFuture<>();
+        datastore.connect((result, error) -> connected.complete(error == null));
+        if (!connected.get(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Unable to connect to the in-memory backend");
+        }
+        DatastoreGroup defaultGroup = newGroup("default", 0, PermissionNodes.generate(NODES_PER_GROUP, 0));
+        defaultGroup.setDefaultGroup(true);
+        if (!datastore.insertGroup(defaultGroup)) {
+            throw new IllegalStateException("Unable to insert the default group");
+        }
+        List<String> nodeList = new ArrayList<>(PermissionNodes.generate(NODE_POOL_SIZE, 1));
+        Random random = new Random(1);
+        for (int i = 0; i < subjectCount; i++) {
+            UUID uniqueId = new UUID(random.nextLong(), random.nextLong());
+            Set<String> nodeSet = new HashSet<>();
+            while (nodeSet.size() < NODES_PER_SUBJECT) {
+                nodeSet.add(nodeList.get(random.nextInt(nodeList.size())));
+            }
+            DatastoreSubject subject = newSubject(uniqueId, "default", nodeSet);
+            if (!datastore.insertSubject(subject)) {
+                throw new IllegalStateException("Unable to insert subject " + subject.getUniqueId());
+            }
+        }
+        subjectList = datastore.getSubjectListByGroup("default");
+        encodedSubjects = DatastoreCodec.encodeSubjects(subjectList);
+        List<DatastoreGroup> groupList = new ArrayList<>();
+        for (int i = 0; i < GROUPS; i++) {
+            DatastoreGroup group = newGroup("group" + i, i + 1, PermissionNodes.generate(NODES_PER_GROUP, i + 1));
+            if (i > 0) {
+                group.getParentSet().add("group" + (i - 1));
+            }
+            groupList.add(group);
+        }
+        encodedGroups = DatastoreCodec.encodeGroups(groupList);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        datastore.close();
+    }
+
+    @Benchmark
+    public List<DatastoreSubject> decodeSubjectsFromJdbc() {
+        return datastore.getSubjectListByGroup("default");
+    }
+
+    @Benchmark
+    public List<DatastoreSubject> decodeSubjects() {
+        return DatastoreCodec.decodeSubjects(encodedSubjects);
+    }
+
+    @Benchmark
+    public byte[] encodeSubjects() {
+        return DatastoreCodec.encodeSubjects(subjectList);
+    }
+
+    @Benchmark
+    public List<DatastoreGroup> decodeGroups() {
+        return DatastoreCodec.decodeGroups(encodedGroups);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.benchmark;
+
+import net.vayzd.orbit.datastore.group.*;
+import net.vayzd.orbit.spigot.permissible.*;
+import org.bukkit.entity.*;
+import org.bukkit.permissions.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Bukkit permission lookups answered by a {@link DatastorePermissible}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DatastorePermissibleBenchmark {
+
+    private static final int CHECKS = 1024;
+
+    @Param({"100", "10000"})
+    private int nodeCount;
+
+    private DatastorePermissible permissible;
+    private String[] hits;
+    private String[] misses;
+    private int index = 0;
+
+    @Setup
+    public void setUp() {
+        Set<String> nodeSet = PermissionNodes.generate(nodeCount, 1);
+        DatastoreGroup group = new DatastoreGroup("default");
+        group.updatePermissionSet(nodeSet);
+        DatastoreSubject subject = new DatastoreSubject();
+        subject.setUniqueId(UUID.randomUUID());
+        subject.setGroupName(group.getName());
+        subject.setGroup(group);
+        permissible = new DatastorePermissible(newPlayer(), subject);
+        hits = PermissionNodes.hits(nodeSet, CHECKS, 2);
+        misses = PermissionNodes.misses(CHECKS, 3);
+    }
+
+    @Benchmark
+    public Set<PermissionAttachmentInfo> getEffectivePermissions() {
+        return permissible.getEffectivePermissions();
+    }
+
+    @Benchmark
+    public boolean isPermissionSetHit() {
+        return permissible.isPermissionSet(hits[index++ & (CHECKS - 1)]);
+    }
+
+    @Benchmark
+    public boolean isPermissionSetMiss() {
+        return permissible.isPermissionSet(misses[index++ & (CHECKS - 1)]);
+    }
+
+    private static Player newPlayer() {
+        // a player without a server, every method returns the default value of its return type
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                (proxy, method, arguments) -> {
+                    Class<?> type = method.getReturnType();
+                    if (type == boolean.class) {
+                        return false;
+                    } else if (type == char.class) {
+                        return '\0';
+                    } else if (type.isPrimitive() && type != void.class) {
+                        return Array.get(Array.newInstance(type, 1), 0);
+                    }
+                    return null;
+                });
+    }
+}
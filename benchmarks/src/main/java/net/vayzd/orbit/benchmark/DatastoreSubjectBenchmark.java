@@ -0,0 +1,84 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.benchmark;
+
+import net.vayzd.orbit.datastore.group.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Checks of a subject, answered by its group alone or together with the
+ * subject's personal nodes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DatastoreSubjectBenchmark {
+
+    private static final int CHECKS = 1024;
+
+    @Param({"100", "10000"})
+    private int nodeCount;
+    @Param({"0", "50"})
+    private int personalCount;
+
+    private DatastoreSubject subject;
+    private String[] hits;
+    private String[] misses;
+    private int index = 0;
+
+    @Setup
+    public void setUp() {
+        Set<String> nodeSet = PermissionNodes.generate(nodeCount, 1);
+        DatastoreGroup group = new DatastoreGroup("default");
+        group.updatePermissionSet(nodeSet);
+        subject = new DatastoreSubject();
+        subject.setUniqueId(UUID.randomUUID());
+        subject.setGroupName(group.getName());
+        subject.setGroup(group);
+        if (personalCount > 0) {
+            subject.updatePermissionSet(PermissionNodes.generate(personalCount, 4));
+        }
+        hits = PermissionNodes.hits(nodeSet, CHECKS, 2);
+        misses = PermissionNodes.misses(CHECKS, 3);
+        // the merged structure is built by the first check, not measured
+        subject.hasPermission(hits[0]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionHit() {
+        return subject.hasPermission(hits[index++ & (CHECKS - 1)]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionMiss() {
+        return subject.hasPermission(misses[index++ & (CHECKS - 1)]);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.benchmark;
+
+import net.vayzd.orbit.datastore.*;
+import net.vayzd.orbit.datastore.group.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import static net.vayzd.orbit.datastore.DatastoreFixtures.*;
+
+/**
+ * Resolution of inheritance graphs holding 10k nodes in total, either as one
+ * long chain of parents (deep) or as one group with many parents (wide).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PermissionCalculatorBenchmark {
+
+    private static final int GROUPS = 64;
+    private static final int NODES_PER_GROUP = 160;
+
+    @Param({"DEEP", "WIDE"})
+    private String shape;
+
+    private Map<String, DatastoreGroup> groupMap;
+    private DatastoreGroup leaf;
+    private Datastore datastore;
+
+    @Setup
+    public void setUp() throws Exception {
+        groupMap = new HashMap<>();
+        leaf = newGroup("leaf", 0, PermissionNodes.generate(NODES_PER_GROUP, 0));
+        groupMap.put(leaf.getName(), leaf);
+        for (int i = 0; i < GROUPS; i++) {
+            DatastoreGroup group = newGroup("group" + i, i + 1, PermissionNodes.generate(NODES_PER_GROUP, i + 1));
+            groupMap.put(group.getName(), group);
+            if (shape.equals("WIDE")) {
+                leaf.getParentSet().add(group.getName());
+            } else if (i > 0) {
+                group.getParentSet().add("group" + (i - 1));
+            }
+        }
+        if (shape.equals("DEEP")) {
+            leaf.getParentSet().add("group" + (GROUPS - 1));
+        }
+        datastore = OrbitDatastore.newDatastore(Logger.getLogger("Benchmark"), new MemoryBackend(),
+                new Thread(), 2, new DatastoreSettings());
+        CompletableFuture<Boolean> connected = new CompletableFuture<>();
+        datastore.connect((result, error) -> connected.complete(error == null));
+        if (!connected.get(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Unable to connect to the in-memory backend");
+        }
+        // inserted groups are served from the datastore's snapshot
+        for (DatastoreGroup group : groupMap.values()) {
+            if (!datastore.insertGroup(group)) {
+                throw new IllegalStateException("Unable to insert group " + group.getName());
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        datastore.close();
+    }
+
+    @Benchmark
+    public PermissionCalculator.Resolution resolveGraph() {
+        return PermissionCalculator.resolve(groupMap);
+    }
+
+    @Benchmark
+    public Set<String> computePermissionSet() {
+        return PermissionCalculator.of(leaf, datastore).computePermissionSet();
+    }
+}
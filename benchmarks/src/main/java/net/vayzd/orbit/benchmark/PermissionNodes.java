@@ -0,0 +1,107 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.benchmark;
+
+import java.util.*;
+
+/**
+ * Generates permission node sets shaped like the ones of real servers: mostly
+ * plain plugin nodes, some wildcards and globs and a few regex nodes.
+ * <p>
+ * Sets are generated from a fixed seed, so every run checks the same nodes.
+ */
+public final class PermissionNodes {
+
+    private static final String[] PLUGINS = {
+            "essentials", "worldedit", "worldguard", "bukkit", "minecraft", "vault", "citizens", "mcmmo",
+            "lobby", "bedwars", "skywars", "chat", "tablist", "nick", "friends", "party"
+    };
+    private static final String[] ACTIONS = {
+            "command", "use", "bypass", "notify", "admin", "edit", "create", "delete", "region", "kit"
+    };
+
+    private PermissionNodes() {
+    }
+
+    /**
+     * @param count the amount of nodes
+     * @param seed  the seed nodes are generated from
+     * @return a set of plain, wildcard, glob and regex nodes
+     */
+    public static Set<String> generate(int count, long seed) {
+        Random random = new Random(seed);
+        Set<String> nodeSet = new HashSet<>(count * 4 / 3 + 1);
+        while (nodeSet.size() < count) {
+            String plugin = PLUGINS[random.nextInt(PLUGINS.length)];
+            String action = ACTIONS[random.nextInt(ACTIONS.length)];
+            int kind = random.nextInt(1000);
+            if (kind < 5) {
+                nodeSet.add("$" + plugin + "\\." + action + "\\.[a-z]+" + random.nextInt(100));
+            } else if (kind < 30) {
+                nodeSet.add(plugin + "." + action + ".*");
+            } else if (kind < 50) {
+                nodeSet.add(plugin + "." + action + random.nextInt(count) + "*");
+            } else {
+                nodeSet.add(plugin + "." + action + "." + Integer.toString(random.nextInt(count * 4), 36));
+            }
+        }
+        return nodeSet;
+    }
+
+    /**
+     * @param nodeSet the nodes checks should be granted by
+     * @param count   the amount of checks
+     * @param seed    the seed checks are picked with
+     * @return permissions granted by plain nodes of the set
+     */
+    public static String[] hits(Set<String> nodeSet, int count, long seed) {
+        List<String> plainList = new ArrayList<>();
+        for (String node : nodeSet) {
+            if (!node.startsWith("$") && !node.contains("*")) {
+                plainList.add(node);
+            }
+        }
+        Random random = new Random(seed);
+        String[] hits = new String[count];
+        for (int i = 0; i < count; i++) {
+            hits[i] = plainList.get(random.nextInt(plainList.size()));
+        }
+        return hits;
+    }
+
+    /**
+     * @param count the amount of checks
+     * @param seed  the seed checks are generated from
+     * @return permissions which aren't granted by any generated set
+     */
+    public static String[] misses(int count, long seed) {
+        Random random = new Random(seed);
+        String[] misses = new String[count];
+        for (int i = 0; i < count; i++) {
+            misses[i] = "unknown" + random.nextInt(16) + ".command." + Integer.toString(random.nextInt(), 36);
+        }
+        return misses;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore.group;
+
+import net.vayzd.orbit.benchmark.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Checks of a single permission matcher, with and without its result cache.
+ * <p>
+ * Lives in the matcher's package, as matchers aren't part of the public API.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PermissionMatcherBenchmark {
+
+    // amount of distinct checked permissions, a power of two
+    private static final int CHECKS = 1024;
+
+    @Param({"100", "10000"})
+    private int nodeCount;
+    @Param({"true", "false"})
+    private boolean caching;
+
+    private PermissionMatcher matcher;
+    private String[] hits;
+    private String[] misses;
+    private int index = 0;
+
+    @Setup
+    public void setUp() {
+        Set<String> nodeSet = PermissionNodes.generate(nodeCount, 1);
+        matcher = new PermissionMatcher(caching ? DatastoreGroup.DEFAULT_CHECK_CACHE_SIZE : 0);
+        matcher.updatePermissionSet(nodeSet);
+        hits = PermissionNodes.hits(nodeSet, CHECKS, 2);
+        misses = PermissionNodes.misses(CHECKS, 3);
+    }
+
+    @Benchmark
+    public boolean hasPermissionHit() {
+        return matcher.hasPermission(hits[index++ & (CHECKS - 1)]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionMiss() {
+        return matcher.hasPermission(misses[index++ & (CHECKS - 1)]);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Collects single key lookups for a short window and resolves them with
+ * one bulk load.
+ * <p>
+ * A batch is dispatched once the window has passed since its first key or
+ * as soon as it holds the maximum amount of keys, whatever happens first.
+ * Lookups of a key which is already part of the pending batch share its
+ * result.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of loaded values
+ */
+final class BatchLoader<K, V> {
+
+    private final BulkLoader<K, V> loader;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final long window;
+    private final int maxBatchSize;
+    private final Object lock = new Object();
+    private Map<K, CompletableFuture<V>> pending = new HashMap<>();
+    private ScheduledFuture<?> scheduled = null;
+
+    BatchLoader(BulkLoader<K, V> loader, Executor executor, ScheduledExecutorService scheduler,
+                long window, int maxBatchSize) {
+        checkArgument(window > 0, "Batch window must be greater than 0");
+        checkArgument(maxBatchSize > 0, "Maximum batch size must be greater than 0");
+        this.loader = checkNotNull(loader, "Bulk loader can't be null");
+        this.executor = checkNotNull(executor, "Executor can't be null");
+        this.scheduler = checkNotNull(scheduler, "Scheduler can't be null");
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    CompletableFuture<V> load(K key) {
+        checkNotNull(key, "Key can't be null");
+        Map<K, CompletableFuture<V>> full = null;
+        CompletableFuture<V> future;
+        synchronized (lock) {
+            future = pending.computeIfAbsent(key, ignored -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize) {
+                full = drain();
+            } else if (scheduled == null) {
+                scheduled = scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return future;
+    }
+
+    void flush() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (lock) {
+            batch = drain();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private Map<K, CompletableFuture<V>> drain() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new HashMap<>();
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        try {
+            executor.execute(() -> {
+                try {
+                    Map<K, V> result = loader.load(batch.keySet());
+                    batch.forEach((key, future) -> future.complete(result.get(key)));
+                } catch (Exception | Error error) {
+                    batch.values().forEach(future -> future.completeExceptionally(error));
+                }
+            });
+        } catch (RejectedExecutionException error) {
+            batch.values().forEach(future -> future.completeExceptionally(error));
+        }
+    }
+
+    @FunctionalInterface
+    interface BulkLoader<K, V> {
+
+        Map<K, V> load(Set<K> keySet) throws Exception;
+    }
+}
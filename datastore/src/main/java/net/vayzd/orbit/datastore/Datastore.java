@@ -24,10 +24,14 @@
  */
 package net.vayzd.orbit.datastore;
 
+import com.github.benmanes.caffeine.cache.stats.*;
 import net.vayzd.orbit.datastore.group.*;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
 
 public interface Datastore extends AutoCloseable {
 
@@ -41,14 +45,23 @@ public interface Datastore extends AutoCloseable {
 
     void fetchAndCacheGroups();
 
+    /**
+     * Fetch and cache all groups, completing with {@code false} if nothing has been cached.
+     */
+    void fetchAndCacheGroups(DataCallback<Boolean> uponCompletion);
+
     Optional<DatastoreGroup> getGroup(String name);
 
     void getGroup(String name, DataCallback<Optional<DatastoreGroup>> callback);
 
+    CompletableFuture<Optional<DatastoreGroup>> getGroupAsync(String name);
+
     boolean hasGroup(String name);
 
     void hasGroup(String name, DataCallback<Boolean> callback);
 
+    CompletableFuture<Boolean> hasGroupAsync(String name);
+
     Optional<DatastoreGroup> getDefaultGroup();
 
     boolean hasDefaultGroup();
@@ -57,35 +70,252 @@ public interface Datastore extends AutoCloseable {
 
     void insertGroup(DatastoreGroup group, DataCallback<Boolean> uponCompletion);
 
+    CompletableFuture<Boolean> insertGroupAsync(DatastoreGroup group);
+
     boolean updateGroup(DatastoreGroup group);
 
     void updateGroup(DatastoreGroup group, DataCallback<Boolean> uponCompletion);
 
+    CompletableFuture<Boolean> updateGroupAsync(DatastoreGroup group);
+
     boolean deleteGroup(DatastoreGroup group);
 
     void deleteGroup(DatastoreGroup group, DataCallback<Boolean> uponCompletion);
 
+    CompletableFuture<Boolean> deleteGroupAsync(DatastoreGroup group);
+
     Optional<DatastoreSubject> getSubject(UUID uniqueId);
 
     void getSubject(UUID uniqueId, DataCallback<Optional<DatastoreSubject>> callback);
 
+    CompletableFuture<Optional<DatastoreSubject>> getSubjectAsync(UUID uniqueId);
+
+    Map<UUID, DatastoreSubject> getSubjects(Collection<UUID> uniqueIds);
+
+    void getSubjects(Collection<UUID> uniqueIds, DataCallback<Map<UUID, DatastoreSubject>> callback);
+
+    CompletableFuture<Map<UUID, DatastoreSubject>> getSubjectsAsync(Collection<UUID> uniqueIds);
+
+    /**
+     * Gets the subject of a player who is currently logging in.
+     * <p>
+     * Unlike {@link #getSubject(UUID)}, lookups which aren't cached are
+     * collected for a few milliseconds and loaded together with the lookups
+     * of all other players logging in meanwhile, using a single query.
+     *
+     * @param uniqueId the unique id of the player
+     * @return the subject, if there is one
+     */
+    Optional<DatastoreSubject> getLoginSubject(UUID uniqueId);
+
+    void getLoginSubject(UUID uniqueId, DataCallback<Optional<DatastoreSubject>> callback);
+
+    /**
+     * Asynchronous variant of {@link #getLoginSubject(UUID)}, which fails if
+     * the subject couldn't be looked up, so a failed lookup can't be mistaken
+     * for a player without a subject.
+     *
+     * @param uniqueId the unique id of the player
+     * @return the subject, if there is one
+     */
+    CompletableFuture<Optional<DatastoreSubject>> getLoginSubjectAsync(UUID uniqueId);
+
     boolean hasSubject(UUID uniqueId);
 
     void hasSubject(UUID uniqueId, DataCallback<Boolean> callback);
 
+    CompletableFuture<Boolean> hasSubjectAsync(UUID uniqueId);
+
+    /**
+     * Loads all subjects of a group at once, use {@link #forEachSubjectByGroup(String, Consumer)}
+     * or {@link #streamSubjectsByGroup(String)} for groups which might be large.
+     *
+     * @param name the name of the group
+     * @return all subjects of the group
+     */
     List<DatastoreSubject> getSubjectListByGroup(String name);
 
     void getSubjectListByGroup(String name, DataCallback<List<DatastoreSubject>> callback);
 
+    CompletableFuture<List<DatastoreSubject>> getSubjectListByGroupAsync(String name);
+
+    /**
+     * Loads a single page of the subjects of a group, ordered by unique id.
+     * <p>
+     * Pages are selected by the last unique id of the previous page instead of
+     * an offset, so every page costs the same no matter how far the group has
+     * been paged through.
+     *
+     * @param name  the name of the group
+     * @param after the next unique id of the previous page, {@code null} for the first page
+     * @param limit the maximum amount of subjects on this page
+     * @return the page, which is empty if there are no more subjects
+     * @throws DatastoreException if the page couldn't be loaded
+     */
+    SubjectPage getSubjectPageByGroup(String name, UUID after, int limit);
+
+    void getSubjectPageByGroup(String name, UUID after, int limit, DataCallback<SubjectPage> callback);
+
+    CompletableFuture<SubjectPage> getSubjectPageByGroupAsync(String name, UUID after, int limit);
+
+    /**
+     * Lazily pulls the subjects of a group page by page, so only one page of
+     * subjects is held in memory and no connection is held between pages.
+     * <p>
+     * A page which can't be loaded fails the stream with a {@link DatastoreException}.
+     *
+     * @param name the name of the group
+     * @return a sequential stream of all subjects of the group
+     */
+    Stream<DatastoreSubject> streamSubjectsByGroup(String name);
+
+    /**
+     * Hands each subject of a group to the consumer, see {@link #streamSubjectsByGroup(String)}.
+     *
+     * @param name     the name of the group
+     * @param consumer the consumer of the subjects
+     */
+    void forEachSubjectByGroup(String name, Consumer<? super DatastoreSubject> consumer);
+
+    CompletableFuture<Void> forEachSubjectByGroupAsync(String name, Consumer<? super DatastoreSubject> consumer);
+
     boolean insertSubject(DatastoreSubject subject);
 
     void insertSubject(DatastoreSubject subject, DataCallback<Boolean> uponCompletion);
 
+    CompletableFuture<Boolean> insertSubjectAsync(DatastoreSubject subject);
+
     boolean updateSubject(DatastoreSubject subject);
 
     void updateSubject(DatastoreSubject subject, DataCallback<Boolean> uponCompletion);
 
+    CompletableFuture<Boolean> updateSubjectAsync(DatastoreSubject subject);
+
     boolean deleteSubject(DatastoreSubject subject);
 
     void deleteSubject(DatastoreSubject subject, DataCallback<Boolean> uponCompletion);
+
+    CompletableFuture<Boolean> deleteSubjectAsync(DatastoreSubject subject);
+
+    /**
+     * Grants a single permission node to a group, without rewriting its other nodes.
+     *
+     * @param name the name of the group
+     * @param node the permission node to grant
+     * @return {@code true} if the node has been stored
+     */
+    boolean grantGroupPermission(String name, String node);
+
+    CompletableFuture<Boolean> grantGroupPermissionAsync(String name, String node);
+
+    boolean revokeGroupPermission(String name, String node);
+
+    CompletableFuture<Boolean> revokeGroupPermissionAsync(String name, String node);
+
+    /**
+     * Grants a single permission node to a subject, without rewriting its other nodes.
+     *
+     * @param uniqueId the unique id of the subject
+     * @param node     the permission node to grant
+     * @return {@code true} if the node has been stored
+     */
+    boolean grantSubjectPermission(UUID uniqueId, String node);
+
+    CompletableFuture<Boolean> grantSubjectPermissionAsync(UUID uniqueId, String node);
+
+    boolean revokeSubjectPermission(UUID uniqueId, String node);
+
+    CompletableFuture<Boolean> revokeSubjectPermissionAsync(UUID uniqueId, String node);
+
+    /**
+     * Looks up all groups which have been granted exactly the given node
+     * themselves, nodes matching it by wildcard or inheritance aren't considered.
+     *
+     * @param node the permission node
+     * @return the names of all groups with the given node
+     */
+    List<String> getGroupNamesWithPermission(String node);
+
+    CompletableFuture<List<String>> getGroupNamesWithPermissionAsync(String node);
+
+    /**
+     * Looks up all subjects which have been granted exactly the given node
+     * personally, nodes matching it by wildcard or inheritance aren't considered.
+     *
+     * @param node the permission node
+     * @return the unique ids of all subjects with the given node
+     */
+    List<UUID> getSubjectIdsWithPermission(String node);
+
+    CompletableFuture<List<UUID>> getSubjectIdsWithPermissionAsync(String node);
+
+    /**
+     * Counts the subjects of a group without loading them, writes still queued
+     * by the write-behind queue aren't counted.
+     *
+     * @param name the name of the group
+     * @return the amount of subjects in the group
+     */
+    long countSubjectsByGroup(String name);
+
+    CompletableFuture<Long> countSubjectsByGroupAsync(String name);
+
+    /**
+     * Counts the subjects of every group with one query, groups without any
+     * subjects are missing from the result.
+     *
+     * @return the amount of subjects by group name
+     */
+    Map<String, Long> countSubjectsPerGroup();
+
+    CompletableFuture<Map<String, Long>> countSubjectsPerGroupAsync();
+
+    /**
+     * Checks if any subject has been granted exactly the given node personally,
+     * without looking up which subjects these are.
+     *
+     * @param node the permission node
+     * @return {@code true} if at least one subject has the node
+     */
+    boolean hasSubjectWithPermission(String node);
+
+    CompletableFuture<Boolean> hasSubjectWithPermissionAsync(String node);
+
+    /**
+     * Moves every subject of a group to another group with set-based updates.
+     * <p>
+     * Subjects are updated in chunks, each committed on its own so locks are
+     * held only briefly. The operation isn't atomic, subjects joining the
+     * group meanwhile may be left behind.
+     * <p>
+     * Subjects handed out by {@link #getLoginSubject(UUID)} and its variants
+     * are reloaded in place afterwards, so online players see the change.
+     *
+     * @param from the name of the group to move subjects from
+     * @param to   the name of the group to move subjects to
+     * @return the amount of moved subjects
+     * @throws PartialUpdateException if a chunk failed, holding the amount of subjects moved before
+     */
+    int reassignSubjects(String from, String to);
+
+    CompletableFuture<Integer> reassignSubjectsAsync(String from, String to);
+
+    /**
+     * Grants a permission node to every subject of a group personally, with
+     * set-based inserts chunked like {@link #reassignSubjects(String, String)}.
+     *
+     * @param name the name of the group
+     * @param node the permission node to grant
+     * @return the amount of subjects which didn't have the node before
+     * @throws PartialUpdateException if a chunk failed, holding the amount of subjects granted the node before
+     */
+    int grantPermissionToSubjectsByGroup(String name, String node);
+
+    CompletableFuture<Integer> grantPermissionToSubjectsByGroupAsync(String name, String node);
+
+    WriteBehindQueue.Stats getWriteBehindStats();
+
+    CacheStats getSubjectCacheStats();
+
+    Map<DatastoreLane, DatastoreExecutor.Stats> getExecutorStats();
 }
\ No newline at end of file
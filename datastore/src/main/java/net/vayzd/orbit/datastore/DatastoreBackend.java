@@ -0,0 +1,54 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import com.zaxxer.hikari.*;
+
+/**
+ * Storage engine an {@link OrbitDatastore} keeps its data in.
+ * <p>
+ * A backend only describes how connections are made and which SQL dialect
+ * they speak, all queries are issued by the datastore itself.
+ */
+public interface DatastoreBackend {
+
+    /**
+     * @return the name of this backend, used for logging
+     */
+    String getName();
+
+    /**
+     * @return the SQL dialect spoken by connections of this backend
+     */
+    DatastoreDialect getDialect();
+
+    /**
+     * Creates the connection pool configuration of this backend.
+     *
+     * @param maximumPoolSize the maximum amount of pooled connections
+     * @return the pool configuration
+     */
+    HikariConfig createConfig(int maximumPoolSize);
+}
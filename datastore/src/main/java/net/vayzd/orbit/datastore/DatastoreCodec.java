@@ -0,0 +1,489 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import lombok.*;
+import net.vayzd.orbit.datastore.group.*;
+
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import static com.google.common.base.Preconditions.*;
+import static java.lang.String.*;
+
+/**
+ * Dense binary encoding of groups and subjects, e.g. for local snapshots or
+ * transfers between servers.
+ * <p>
+ * Encoded entries start with the format version and their kind, followed by
+ * a dictionary of all names and nodes, so each of them is stored once no
+ * matter how many entries refer to it. Lengths, counts and dictionary indices
+ * are varints, nullable strings are stored as their index + 1. The dictionary
+ * is sorted, so sorted node sets are decoded without comparing their nodes.
+ * <p>
+ * Decoded groups aren't resolved yet and decoded subjects aren't linked to
+ * their group, just like entries read from the database.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class DatastoreCodec {
+
+    public static final int FORMAT_VERSION = 1;
+    private static final int GROUPS = 1;
+    private static final int SUBJECTS = 2;
+    private static final int DEFAULT_GROUP = 1;
+
+    public static byte[] encodeGroups(Collection<DatastoreGroup> groups) {
+        checkNotNull(groups, "Groups can't be null");
+        Dictionary dictionary = new Dictionary();
+        for (DatastoreGroup group : groups) {
+            dictionary.intern(group.getName());
+            dictionary.intern(group.getDisplayName());
+            dictionary.intern(group.getPrefix());
+            dictionary.intern(group.getSuffix());
+            group.getParentSet().forEach(dictionary::intern);
+            group.getPermissionSet().forEach(dictionary::intern);
+        }
+        Output output = dictionary.writeHeader(GROUPS, groups.size() * 16);
+        output.writeVarint(groups.size());
+        for (DatastoreGroup group : groups) {
+            output.writeVarint(dictionary.indexOf(checkNotNull(group.getName(), "Name can't be null")));
+            output.writeByte(group.isDefaultGroup() ? DEFAULT_GROUP : 0);
+            output.writeVarint(dictionary.nullableIndexOf(group.getDisplayName()));
+            output.writeVarint(dictionary.nullableIndexOf(group.getPrefix()));
+            output.writeVarint(dictionary.nullableIndexOf(group.getSuffix()));
+            output.writeVarint(group.getColorChar());
+            // zigzag, so negative orders stay short
+            output.writeVarint((group.getTabOrder() << 1) ^ (group.getTabOrder() >> 31));
+            output.writeIndices(dictionary, group.getParentSet());
+            output.writeIndices(dictionary, group.getPermissionSet());
+        }
+        return output.toByteArray();
+    }
+
+    public static List<DatastoreGroup> decodeGroups(byte[] bytes) {
+        checkNotNull(bytes, "Bytes can't be null");
+        return decodeGroups(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes the groups from the remaining bytes of the given buffer, which
+     * may be a direct or memory mapped one.
+     *
+     * @param buffer the encoded groups, its position is advanced past them
+     * @return the decoded groups in encoded order
+     * @throws IllegalArgumentException if the bytes aren't encoded groups
+     */
+    public static List<DatastoreGroup> decodeGroups(ByteBuffer buffer) {
+        checkNotNull(buffer, "Buffer can't be null");
+        try {
+            Input input = new Input(buffer);
+            String[] dictionary = input.readHeader(GROUPS);
+            int count = input.readCount();
+            List<DatastoreGroup> groupList = new ArrayList<>(count);
+            for (int index = 0; index < count; index++) {
+                DatastoreGroup group = new DatastoreGroup(dictionary[input.readVarint()]);
+                group.setDefaultGroup((input.readByte() & DEFAULT_GROUP) != 0);
+                group.setDisplayName(input.readNullable(dictionary));
+                group.setPrefix(input.readNullable(dictionary));
+                group.setSuffix(input.readNullable(dictionary));
+                group.setColorChar((char) input.readVarint());
+                int tabOrder = input.readVarint();
+                group.setTabOrder((tabOrder >>> 1) ^ -(tabOrder & 1));
+                input.readIndices(dictionary, group.getParentSet());
+                input.readIndices(dictionary, group.getPermissionSet());
+                groupList.add(group);
+            }
+            return groupList;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException error) {
+            throw new IllegalArgumentException("Encoded groups are truncated or corrupted", error);
+        }
+    }
+
+    public static byte[] encodeSubjects(Collection<DatastoreSubject> subjects) {
+        checkNotNull(subjects, "Subjects can't be null");
+        Dictionary dictionary = new Dictionary();
+        for (DatastoreSubject subject : subjects) {
+            dictionary.intern(subject.getEffectiveGroupName());
+            subject.getPermissionSet().forEach(dictionary::intern);
+        }
+        Output output = dictionary.writeHeader(SUBJECTS, subjects.size() * 20);
+        output.writeVarint(subjects.size());
+        for (DatastoreSubject subject : subjects) {
+            UUID uniqueId = checkNotNull(subject.getUniqueId(), "Unique id can't be null");
+            output.writeLong(uniqueId.getMostSignificantBits());
+            output.writeLong(uniqueId.getLeastSignificantBits());
+            output.writeVarint(dictionary.nullableIndexOf(subject.getEffectiveGroupName()));
+            output.writeIndices(dictionary, subject.getPermissionSet());
+        }
+        return output.toByteArray();
+    }
+
+    public static List<DatastoreSubject> decodeSubjects(byte[] bytes) {
+        checkNotNull(bytes, "Bytes can't be null");
+        return decodeSubjects(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes the subjects from the remaining bytes of the given buffer.
+     *
+     * @param buffer the encoded subjects, its position is advanced past them
+     * @return the decoded subjects in encoded order
+     * @throws IllegalArgumentException if the bytes aren't encoded subjects
+     */
+    public static List<DatastoreSubject> decodeSubjects(ByteBuffer buffer) {
+        checkNotNull(buffer, "Buffer can't be null");
+        try {
+            Input input = new Input(buffer);
+            String[] dictionary = input.readHeader(SUBJECTS);
+            int count = input.readCount();
+            List<DatastoreSubject> subjectList = new ArrayList<>(count);
+            for (int index = 0; index < count; index++) {
+                DatastoreSubject subject = new DatastoreSubject();
+                subject.setUniqueId(new UUID(input.readLong(), input.readLong()));
+                subject.setGroupName(input.readNullable(dictionary));
+                Set<String> nodeSet = new TreeSet<>();
+                input.readIndices(dictionary, nodeSet);
+                subject.updatePermissionSet(nodeSet);
+                subjectList.add(subject);
+            }
+            return subjectList;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException error) {
+            throw new IllegalArgumentException("Encoded subjects are truncated or corrupted", error);
+        }
+    }
+
+    private static final class Dictionary {
+
+        private final Set<String> valueSet = new HashSet<>();
+        private final Map<String, Integer> indexMap = new HashMap<>();
+        private int byteCount = 0;
+
+        private void intern(String value) {
+            if (value != null && valueSet.add(value)) {
+                byteCount += value.length() + 1;
+            }
+        }
+
+        private int indexOf(String value) {
+            return indexMap.get(value);
+        }
+
+        private int nullableIndexOf(String value) {
+            return value == null ? 0 : indexMap.get(value) + 1;
+        }
+
+        private Output writeHeader(int kind, int entryBytes) {
+            // sorted, so indices of sorted node sets are ascending as well
+            String[] values = valueSet.toArray(new String[valueSet.size()]);
+            Arrays.sort(values);
+            Output output = new Output(byteCount + entryBytes + 16);
+            output.writeVarint(FORMAT_VERSION);
+            output.writeByte(kind);
+            output.writeVarint(values.length);
+            for (int index = 0; index < values.length; index++) {
+                indexMap.put(values[index], index);
+                output.writeString(values[index]);
+            }
+            return output;
+        }
+    }
+
+    private static final class Output {
+
+        private byte[] bytes;
+        private int size = 0;
+
+        private Output(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        private void ensure(int count) {
+            if (size + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + count));
+            }
+        }
+
+        private void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        private void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeString(String value) {
+            int length = value.length();
+            for (int index = 0; index < length; index++) {
+                if (value.charAt(index) >= 0x80) {
+                    byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(encoded.length);
+                    ensure(encoded.length);
+                    System.arraycopy(encoded, 0, bytes, size, encoded.length);
+                    size += encoded.length;
+                    return;
+                }
+            }
+            // plain ASCII, which most nodes are, is copied without an intermediate array
+            writeVarint(length);
+            ensure(length);
+            for (int index = 0; index < length; index++) {
+                bytes[size++] = (byte) value.charAt(index);
+            }
+        }
+
+        private void writeIndices(Dictionary dictionary, Set<String> values) {
+            writeVarint(values.size());
+            for (String value : values) {
+                writeVarint(dictionary.indexOf(value));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class Input {
+
+        private final ByteBuffer buffer;
+        private byte[] scratch = null;
+        private int[] indices = new int[16];
+
+        private String[] readHeader(int kind) {
+            int version = readVarint();
+            checkArgument(version == FORMAT_VERSION, format("Unsupported format version %s", version));
+            int actual = readByte();
+            checkArgument(actual == kind, format("Expected entries of kind %s, but got %s", kind, actual));
+            String[] dictionary = new String[readCount()];
+            for (int index = 0; index < dictionary.length; index++) {
+                dictionary[index] = readString();
+                if (index > 0 && dictionary[index - 1].compareTo(dictionary[index]) >= 0) {
+                    throw new IllegalArgumentException("Dictionary isn't sorted");
+                }
+            }
+            return dictionary;
+        }
+
+        private int readByte() {
+            return buffer.get();
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte next = buffer.get();
+                value |= (next & 0x7F) << shift;
+                if (next >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        // every counted element takes at least one byte, so corrupted counts never allocate huge arrays
+        private int readCount() {
+            int count = readVarint();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IllegalArgumentException(format("Invalid count %s", count));
+            }
+            return count;
+        }
+
+        // independent of the buffer's byte order
+        private long readLong() {
+            long value = 0;
+            for (int index = 0; index < 8; index++) {
+                value = (value << 8) | (buffer.get() & 0xFF);
+            }
+            return value;
+        }
+
+        private String readString() {
+            int length = readCount();
+            int position = buffer.position();
+            String value;
+            if (buffer.hasArray()) {
+                value = new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+            } else {
+                if (scratch == null || scratch.length < length) {
+                    scratch = new byte[Math.max(64, length)];
+                }
+                buffer.get(scratch, 0, length);
+                value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+            buffer.position(position + length);
+            return value;
+        }
+
+        private String readNullable(String[] dictionary) {
+            int index = readVarint();
+            return index == 0 ? null : dictionary[index - 1];
+        }
+
+        private void readIndices(String[] dictionary, Set<String> values) {
+            int count = readCount();
+            if (indices.length < count) {
+                indices = new int[Math.max(count, indices.length * 2)];
+            }
+            boolean ascending = true;
+            for (int index = 0; index < count; index++) {
+                int next = readVarint();
+                if (next < 0 || next >= dictionary.length) {
+                    throw new IllegalArgumentException(format("Invalid dictionary index %s", next));
+                }
+                ascending &= index == 0 || next > indices[index - 1];
+                indices[index] = next;
+            }
+            if (ascending) {
+                // an empty tree set is built from a sorted set without comparing any nodes
+                values.addAll(new SortedRun(dictionary, indices, 0, count));
+            } else {
+                for (int index = 0; index < count; index++) {
+                    values.add(dictionary[indices[index]]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ascending run of dictionary nodes, read through their indices between
+     * {@code from} (inclusive) and {@code to} (exclusive). Range views share
+     * the indices and locate their bounds by binary search.
+     */
+    @RequiredArgsConstructor
+    static final class SortedRun extends AbstractSet<String> implements SortedSet<String> {
+
+        private final String[] dictionary;
+        private final int[] indices;
+        private final int from;
+        private final int to;
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+
+                private int position = from;
+
+                @Override
+                public boolean hasNext() {
+                    return position < to;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return dictionary[indices[position++]];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object value) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            int position = lowerBound((String) value);
+            return position < to && dictionary[indices[position]].equals(value);
+        }
+
+        @Override
+        public Comparator<? super String> comparator() {
+            return null;
+        }
+
+        @Override
+        public SortedSet<String> subSet(String fromElement, String toElement) {
+            checkNotNull(fromElement, "Node can't be null");
+            checkNotNull(toElement, "Node can't be null");
+            checkArgument(fromElement.compareTo(toElement) <= 0, "Range start %s is after its end %s",
+                    fromElement, toElement);
+            return new SortedRun(dictionary, indices, lowerBound(fromElement), lowerBound(toElement));
+        }
+
+        @Override
+        public SortedSet<String> headSet(String toElement) {
+            return new SortedRun(dictionary, indices, from, lowerBound(toElement));
+        }
+
+        @Override
+        public SortedSet<String> tailSet(String fromElement) {
+            return new SortedRun(dictionary, indices, lowerBound(fromElement), to);
+        }
+
+        @Override
+        public String first() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return dictionary[indices[from]];
+        }
+
+        @Override
+        public String last() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return dictionary[indices[to - 1]];
+        }
+
+        // position of the first node not less than the given one
+        private int lowerBound(String value) {
+            checkNotNull(value, "Node can't be null");
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (dictionary[indices[middle]].compareTo(value) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
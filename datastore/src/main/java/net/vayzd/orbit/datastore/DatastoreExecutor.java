@@ -0,0 +1,281 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import lombok.*;
+
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Bounded executor running the asynchronous work of a {@link Datastore}.
+ * <p>
+ * Tasks submitted from one of its own threads run inline, so nested
+ * operations never wait behind their own queue. Once the queue is full,
+ * tasks are handled as configured by its {@link RejectionPolicy}.
+ * <p>
+ * In virtual mode every task runs on its own virtual thread, the thread
+ * count then only limits how many of them run at the same time. Executors
+ * may share a semaphore on top, to bound all of them together.
+ */
+public final class DatastoreExecutor implements Executor {
+
+    private static final ThreadLocal<DatastoreExecutor> OWNER = new ThreadLocal<>();
+    private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+
+    private final String name;
+    private final int threads;
+    private final int queueSize;
+    private final RejectionPolicy policy;
+    private final Thread primary;
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService virtualExecutor;
+    private final Semaphore permits;
+    private final Semaphore sharedPermits;
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final AtomicLong threadCount = new AtomicLong(0);
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder waitTime = new LongAdder();
+    private final AtomicLong maxWaitTime = new AtomicLong(0);
+
+    DatastoreExecutor(String name, int threads, int queueSize, RejectionPolicy policy, Thread primary) {
+        this(name, threads, queueSize, policy, primary, false);
+    }
+
+    DatastoreExecutor(String name, int threads, int queueSize, RejectionPolicy policy, Thread primary,
+                      boolean virtual) {
+        this(name, threads, queueSize, policy, primary, virtual, null);
+    }
+
+    DatastoreExecutor(String name, int threads, int queueSize, RejectionPolicy policy, Thread primary,
+                      boolean virtual, Semaphore sharedPermits) {
+        checkArgument(threads > 0, "Thread count must be greater than 0");
+        checkArgument(queueSize > 0, "Queue size must be greater than 0");
+        this.name = checkNotNull(name, "Name can't be null");
+        this.threads = threads;
+        this.queueSize = queueSize;
+        this.policy = checkNotNull(policy, "Rejection policy can't be null");
+        this.primary = checkNotNull(primary, "Primary thread can't be null");
+        ExecutorService virtualExecutor = virtual ? newVirtualExecutor() : null;
+        if (virtualExecutor != null) {
+            this.pool = null;
+            this.virtualExecutor = virtualExecutor;
+            this.permits = new Semaphore(threads, true);
+            this.sharedPermits = sharedPermits;
+        } else {
+            this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize),
+                    runnable -> {
+                        Thread thread = Executors.defaultThreadFactory().newThread(() -> {
+                            OWNER.set(this);
+                            runnable.run();
+                        });
+                        thread.setName(name + " Thread #" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy()
+            );
+            this.pool.allowCoreThreadTimeOut(true);
+            this.virtualExecutor = null;
+            this.permits = null;
+            this.sharedPermits = null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        checkNotNull(task, "Database task (Runnable) can't be null");
+        if (OWNER.get() == this) {
+            task.run();
+            return;
+        }
+        submitted.increment();
+        long enqueued = System.nanoTime();
+        try {
+            if (virtualExecutor != null) {
+                executeVirtual(task, enqueued);
+            } else {
+                pool.execute(() -> run(task, enqueued));
+            }
+        } catch (RejectedExecutionException error) {
+            // the primary thread must never block on database work
+            if (policy == RejectionPolicy.CALLER_RUNS && !isShutdown() && !primary.equals(Thread.currentThread())) {
+                callerRuns.increment();
+                run(task, enqueued);
+                return;
+            }
+            rejected.increment();
+            throw error;
+        }
+    }
+
+    /**
+     * @return {@code true} if the current thread is one of this executor's threads
+     */
+    public boolean isOwnerThread() {
+        return OWNER.get() == this;
+    }
+
+    /**
+     * @return {@code true} if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtualExecutor != null;
+    }
+
+    public Stats getStats() {
+        long completedCount = completed.sum();
+        return new Stats(
+                name,
+                isVirtual(),
+                threads,
+                isVirtual() ? threads - permits.availablePermits() : pool.getActiveCount(),
+                isVirtual() ? permits.getQueueLength() : pool.getQueue().size(),
+                queueSize,
+                submitted.sum(),
+                completedCount,
+                rejected.sum(),
+                callerRuns.sum(),
+                completedCount > 0 ? waitTime.sum() / completedCount : 0,
+                maxWaitTime.get()
+        );
+    }
+
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        ExecutorService service = isVirtual() ? virtualExecutor : pool;
+        service.shutdown();
+        return service.awaitTermination(timeout, unit);
+    }
+
+    private boolean isShutdown() {
+        return isVirtual() ? virtualExecutor.isShutdown() : pool.isShutdown();
+    }
+
+    private void executeVirtual(Runnable task, long enqueued) {
+        // running and waiting tasks together are bounded like a pool with its queue
+        if (pending.incrementAndGet() > threads + queueSize) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException(name + " queue is full");
+        }
+        try {
+            virtualExecutor.execute(() -> {
+                OWNER.set(this);
+                permits.acquireUninterruptibly();
+                if (sharedPermits != null) {
+                    sharedPermits.acquireUninterruptibly();
+                }
+                try {
+                    run(task, enqueued);
+                } finally {
+                    if (sharedPermits != null) {
+                        sharedPermits.release();
+                    }
+                    permits.release();
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException error) {
+            pending.decrementAndGet();
+            throw error;
+        }
+    }
+
+    private void run(Runnable task, long enqueued) {
+        long waited = System.nanoTime() - enqueued;
+        waitTime.add(waited);
+        maxWaitTime.accumulateAndGet(waited, Math::max);
+        try {
+            task.run();
+        } finally {
+            completed.increment();
+        }
+    }
+
+    /**
+     * @return {@code true} if this JVM supports virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_EXECUTOR_FACTORY != null;
+    }
+
+    private static ExecutorService newVirtualExecutor() {
+        if (VIRTUAL_EXECUTOR_FACTORY == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException error) {
+            return null;
+        }
+    }
+
+    private static Method findVirtualExecutorFactory() {
+        // virtual threads are available as of Java 21, looked up reflectively to still run on Java 8
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException error) {
+            return null;
+        }
+    }
+
+    public enum RejectionPolicy {
+
+        /**
+         * Fail the task with a {@link RejectedExecutionException}.
+         */
+        ABORT,
+        /**
+         * Run the task on the submitting thread, unless it's the primary thread.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * Point-in-time metrics of a {@link DatastoreExecutor}, times are in nanoseconds.
+     */
+    @Value
+    public static class Stats {
+
+        String name;
+        boolean virtual;
+        int threadCount;
+        int activeThreadCount;
+        int queueDepth;
+        int queueSize;
+        long submittedCount;
+        long completedCount;
+        long rejectedCount;
+        long callerRunsCount;
+        long averageWaitTime;
+        long maxWaitTime;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import lombok.*;
+
+import java.util.concurrent.*;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Composition helpers for the futures returned by the asynchronous
+ * {@link Datastore} methods.
+ * <p>
+ * Cancelling a future returned by these helpers also cancels the source
+ * future, so a datastore operation which hasn't been started yet is skipped.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class DatastoreFutures {
+
+    private static final ScheduledThreadPoolExecutor DEADLINE_SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+        thread.setName("Datastore Deadline Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        DEADLINE_SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Returns a future which fails with a {@link TimeoutException} if the given
+     * future doesn't complete within the given time, the given future is
+     * cancelled in that case.
+     *
+     * @param future  the future to await
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @param <T>     the type of result
+     * @return a future completed with the result, error or timeout
+     */
+    public static <T> CompletableFuture<T> withDeadline(CompletableFuture<T> future, long timeout, TimeUnit unit) {
+        checkNotNull(future, "Future can't be null");
+        checkNotNull(unit, "Time unit can't be null");
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timer = DEADLINE_SCHEDULER.schedule(() -> {
+            if (result.completeExceptionally(new TimeoutException(format(timeout, unit)))) {
+                future.cancel(false);
+            }
+        }, timeout, unit);
+        future.whenComplete((value, error) -> {
+            timer.cancel(false);
+            complete(result, value, error);
+        });
+        propagateCancellation(result, future);
+        return result;
+    }
+
+    /**
+     * Returns a future which is completed on the given executor, so dependent
+     * stages don't run on datastore threads.
+     *
+     * @param future   the future to await
+     * @param executor the executor to complete the returned future on
+     * @param <T>      the type of result
+     * @return a future completed with the result or error on the given executor
+     */
+    public static <T> CompletableFuture<T> completeOn(CompletableFuture<T> future, Executor executor) {
+        checkNotNull(future, "Future can't be null");
+        checkNotNull(executor, "Executor can't be null");
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            try {
+                executor.execute(() -> complete(result, value, error));
+            } catch (RejectedExecutionException rejected) {
+                result.completeExceptionally(rejected);
+            }
+        });
+        propagateCancellation(result, future);
+        return result;
+    }
+
+    private static <T> void complete(CompletableFuture<T> result, T value, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error != null) {
+            result.completeExceptionally(error);
+        } else {
+            result.complete(value);
+        }
+    }
+
+    private static void propagateCancellation(CompletableFuture<?> result, CompletableFuture<?> source) {
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                source.cancel(false);
+            }
+        });
+    }
+
+    private static String format(long timeout, TimeUnit unit) {
+        return String.format("Datastore operation didn't complete within %s %s", timeout, unit.name().toLowerCase());
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import lombok.*;
+import net.vayzd.orbit.datastore.group.*;
+
+import java.sql.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.logging.*;
+
+import static java.lang.String.*;
+import static java.util.Arrays.*;
+
+/**
+ * Creates the datastore's tables and migrates existing data to the current
+ * schema version.
+ * <p>
+ * Version 1 stored parents and permission nodes as {@code ;}-joined text
+ * columns, as of version 2 they are stored as one row per node. The
+ * legacy columns are left in place, but no longer read. Version 3 stores
+ * subject unique ids as {@code BINARY(16)} instead of their 36 character
+ * text form.
+ * <p>
+ * Tables of older versions are only converted on dialects which support it,
+ * all other databases are created with the current schema right away.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class DatastoreSchema {
+
+    static final int VERSION = 3;
+    static final String GROUPS = table(DatastoreGroup.class);
+    static final String SUBJECTS = table(DatastoreSubject.class);
+    static final String GROUP_PARENTS = "group_parents";
+    static final String GROUP_PERMISSIONS = "group_permissions";
+    static final String SUBJECT_PERMISSIONS = "subject_permissions";
+    static final String SCHEMA_VERSION = "schema_version";
+    // nodes are limited to 191 characters, so the keys fit into 767 bytes of utf8
+    static final int NODE_LENGTH = 191;
+
+    // amount of migrated rows sent to the database with one batch
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+
+    private static final List<String> TABLE_SCHEMA = asList(
+
+            format("CREATE TABLE IF NOT EXISTS `%s`(" +
+                    "`name` VARCHAR(16) NOT NULL, " +
+                    "`parents` TEXT NOT NULL, " +
+                    "`default_group` BOOLEAN NOT NULL, " +
+                    "`display_name` VARCHAR(16) NOT NULL, " +
+                    "`prefix` VARCHAR(16) NOT NULL, " +
+                    "`suffix` VARCHAR(16) NOT NULL, " +
+                    "`color_char` CHAR(1) NOT NULL, " +
+                    "`tab_order` SMALLINT NOT NULL, " +
+                    "`permissions` TEXT NOT NULL, " +
+                    "PRIMARY KEY(`name`), UNIQUE(`tab_order`)" +
+                    ")%%s", GROUPS),
+
+            format("CREATE TABLE IF NOT EXISTS `%s`(" +
+                    "`uniqueId` BINARY(16) NOT NULL, " +
+                    "`group_name` VARCHAR(16) NOT NULL, " +
+                    "`permissions` TEXT NOT NULL, " +
+                    "PRIMARY KEY(`uniqueId`), INDEX(`group_name`)" +
+                    ")%%s", SUBJECTS),
+
+            format("CREATE TABLE IF NOT EXISTS `%s`(" +
+                    "`group_name` VARCHAR(16) NOT NULL, " +
+                    "`parent` VARCHAR(16) NOT NULL, " +
+                    "PRIMARY KEY(`group_name`, `parent`), INDEX(`parent`)" +
+                    ")%%s", GROUP_PARENTS),
+
+            format("CREATE TABLE IF NOT EXISTS `%s`(" +
+                    "`group_name` VARCHAR(16) NOT NULL, " +
+                    "`node` VARCHAR(" + NODE_LENGTH + ") NOT NULL, " +
+                    "PRIMARY KEY(`group_name`, `node`), INDEX(`node`)" +
+                    ")%%s", GROUP_PERMISSIONS),
+
+            format("CREATE TABLE IF NOT EXISTS `%s`(" +
+                    "`uniqueId` BINARY(16) NOT NULL, " +
+                    "`node` VARCHAR(" + NODE_LENGTH + ") NOT NULL, " +
+                    "PRIMARY KEY(`uniqueId`, `node`), INDEX(`node`)" +
+                    ")%%s", SUBJECT_PERMISSIONS),
+
+            format("CREATE TABLE IF NOT EXISTS `%s`(" +
+                    "`version` INT NOT NULL" +
+                    ")%%s", SCHEMA_VERSION)
+    );
+
+    /**
+     * Creates all missing tables and migrates their data to the current version.
+     * <p>
+     * Node migrations run in one transaction and only insert missing rows,
+     * unique id conversions skip tables that have already been converted and
+     * resume where they left off, so an interrupted migration can be restarted.
+     *
+     * @param connection the connection to use
+     * @param dialect    the dialect spoken by the connection
+     * @param logger     the logger to report migrations to
+     * @throws SQLException if the schema couldn't be created or migrated
+     */
+    static void ensure(Connection connection, DatastoreDialect dialect, Logger logger) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String tableSchema : TABLE_SCHEMA) {
+                statement.executeUpdate(format(tableSchema, dialect.getTableOptions()));
+            }
+        }
+        int version = selectVersion(connection);
+        if (version >= VERSION) {
+            return;
+        }
+        if (!dialect.isLegacyMigrationSupported()) {
+            updateVersion(connection, VERSION);
+            return;
+        }
+        logger.info(format("Migrating datastore schema from version %s to %s...", version, VERSION));
+        if (version < 2) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                migrateNodes(connection, logger, GROUPS, "name", "parents", GROUP_PARENTS, "group_name",
+                        "parent", owner -> owner);
+                migrateNodes(connection, logger, GROUPS, "name", "permissions", GROUP_PERMISSIONS, "group_name",
+                        "node", owner -> owner);
+                migrateNodes(connection, logger, SUBJECTS, "uniqueId", "permissions", SUBJECT_PERMISSIONS,
+                        "uniqueId", "node", DatastoreSchema::parseUniqueId);
+                updateVersion(connection, 2);
+                connection.commit();
+            } catch (SQLException error) {
+                connection.rollback();
+                throw error;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        if (version < 3) {
+            convertUniqueIds(connection, logger, SUBJECTS, "`uniqueId`");
+            convertUniqueIds(connection, logger, SUBJECT_PERMISSIONS, "`uniqueId`, `node`");
+            updateVersion(connection, 3);
+        }
+        logger.info(format("Successfully migrated datastore schema to version %s!", VERSION));
+    }
+
+    private static int selectVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery(format("SELECT MAX(version) FROM %s", SCHEMA_VERSION))) {
+            int version = set.next() ? set.getInt(1) : 0;
+            // tables without a version row have been created by the first schema
+            return version > 0 ? version : 1;
+        }
+    }
+
+    private static void updateVersion(Connection connection, int version) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(format("DELETE FROM %s", SCHEMA_VERSION));
+            statement.executeUpdate(format("INSERT INTO %s(version) VALUES (%s)", SCHEMA_VERSION, version));
+        }
+    }
+
+    private static void migrateNodes(Connection connection, Logger logger, String sourceTable, String sourceOwner,
+                                     String sourceColumn, String targetTable, String targetOwner,
+                                     String targetColumn, Function<String, Object> ownerMapper)
+            throws SQLException {
+        try (Statement select = connection.createStatement();
+             ResultSet set = select.executeQuery(format("SELECT %s, %s FROM %s",
+                     sourceOwner, sourceColumn, sourceTable));
+             PreparedStatement insert = connection.prepareStatement(format(
+                     "INSERT IGNORE INTO %s(%s, %s) VALUES (?, ?)",
+                     targetTable, targetOwner, targetColumn))) {
+            int pending = 0;
+            while (set.next()) {
+                Object owner = ownerMapper.apply(set.getString(1));
+                String value = set.getString(2);
+                if (owner == null || value == null) {
+                    continue;
+                }
+                for (String node : value.split(";")) {
+                    if (node.isEmpty()) {
+                        continue;
+                    }
+                    if (node.length() > NODE_LENGTH) {
+                        // would be truncated into a different node, or collide with one
+                        logger.warning(format("Skipped migrating '%s' of %s='%s', it's longer than %s characters!",
+                                node, sourceOwner, set.getString(1), NODE_LENGTH));
+                        continue;
+                    }
+                    insert.setObject(1, owner);
+                    insert.setString(2, node);
+                    insert.addBatch();
+                    if (++pending % MIGRATION_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+            }
+            if (pending % MIGRATION_BATCH_SIZE != 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private static byte[] parseUniqueId(String uniqueId) {
+        try {
+            return UniqueIds.toBytes(UUID.fromString(uniqueId));
+        } catch (IllegalArgumentException error) {
+            return null;
+        }
+    }
+
+    /*
+     * Replaces the text uniqueId column of the given table by a BINARY(16) one.
+     * The binary values are filled into a separate column first, so the
+     * conversion can be resumed if the server stops in between.
+     */
+    private static void convertUniqueIds(Connection connection, Logger logger, String table,
+                                         String primaryKey) throws SQLException {
+        if (isBinaryColumn(connection, table, "uniqueId")) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            if (!hasColumn(connection, table, "uniqueId_bin")) {
+                statement.executeUpdate(format("ALTER TABLE `%s` ADD COLUMN `uniqueId_bin` BINARY(16) NULL", table));
+            }
+            statement.executeUpdate(format("UPDATE `%s` SET `uniqueId_bin`=UNHEX(REPLACE(`uniqueId`, '-', '')) " +
+                    "WHERE `uniqueId_bin` IS NULL AND CHAR_LENGTH(REPLACE(`uniqueId`, '-', ''))=32", table));
+            int invalid = statement.executeUpdate(format("DELETE FROM `%s` WHERE `uniqueId_bin` IS NULL", table));
+            if (invalid > 0) {
+                logger.warning(format("Dropped %s rows with an invalid uniqueId from %s", invalid, table));
+            }
+            statement.executeUpdate(format("ALTER TABLE `%s` DROP PRIMARY KEY, DROP COLUMN `uniqueId`, " +
+                    "CHANGE `uniqueId_bin` `uniqueId` BINARY(16) NOT NULL FIRST, ADD PRIMARY KEY(%s)",
+                    table, primaryKey));
+        }
+    }
+
+    private static boolean isBinaryColumn(Connection connection, String table, String column) throws SQLException {
+        try (ResultSet set = selectColumn(connection, table, column)) {
+            if (!set.next()) {
+                return false;
+            }
+            int type = set.getInt("DATA_TYPE");
+            return type == Types.BINARY || type == Types.VARBINARY;
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (ResultSet set = selectColumn(connection, table, column)) {
+            return set.next();
+        }
+    }
+
+    private static ResultSet selectColumn(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        if (metaData.storesUpperCaseIdentifiers()) {
+            table = table.toUpperCase(Locale.ROOT);
+            column = column.toUpperCase(Locale.ROOT);
+        }
+        return metaData.getColumns(connection.getCatalog(), null, table, column);
+    }
+
+    private static String table(Class<? extends DatastoreEntry> from) {
+        return from.getAnnotation(DatastoreTable.class).name();
+    }
+}
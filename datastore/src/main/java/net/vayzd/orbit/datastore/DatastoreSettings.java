@@ -0,0 +1,69 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import lombok.*;
+import net.vayzd.orbit.datastore.group.*;
+
+import java.io.*;
+
+/**
+ * Tunables of an {@link OrbitDatastore}, every option has a sane default.
+ */
+@NoArgsConstructor
+@Data
+public class DatastoreSettings {
+
+    // maximum amount of cached permission check results per group, 0 disables the check cache
+    private long checkCacheSize = DatastoreGroup.DEFAULT_CHECK_CACHE_SIZE;
+    // maximum amount of locally cached subjects, 0 disables the subject cache
+    private long subjectCacheSize = 10000;
+    // seconds after loading until a cached subject expires
+    private long subjectCacheExpireAfter = 300;
+    // seconds after loading until a cached subject is reloaded in the background on its next access
+    private long subjectCacheRefreshAfter = 60;
+    // milliseconds login lookups are collected to be loaded with one query, 0 disables batching
+    private long loginBatchWindow = 5;
+    // maximum amount of login lookups loaded with one query
+    private int loginBatchSize = 100;
+    // run each asynchronous task on a virtual thread if supported (Java 21+)
+    private boolean virtualThreads = false;
+    // milliseconds subject writes are queued to be flushed in batches, 0 writes them immediately
+    private long writeBehindInterval = 0;
+    // maximum amount of subject writes flushed with one batch
+    private int writeBehindBatchSize = 500;
+    // subjects read with one page when streaming the subjects of a group
+    private int subjectFetchSize = 1000;
+    // local copy of the group graph to serve groups from until the database is reachable, null disables it
+    private File groupSnapshotFile = null;
+    // threads per lane, 0 derives them from the connection pool size
+    private int loginLaneThreads = 0;
+    private int refreshLaneThreads = 0;
+    private int bulkLaneThreads = 0;
+    // maximum amount of queued asynchronous datastore tasks per lane
+    private int executorQueueSize = 1024;
+    // how asynchronous tasks are handled once the queue is full
+    private DatastoreExecutor.RejectionPolicy executorRejectionPolicy = DatastoreExecutor.RejectionPolicy.CALLER_RUNS;
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import com.google.common.collect.*;
+import lombok.*;
+import net.vayzd.orbit.datastore.group.*;
+
+import java.util.*;
+
+/**
+ * Immutable view of all locally cached groups.
+ * <p>
+ * A snapshot is completely built and resolved before it is published by
+ * a single reference swap, so readers never block and never observe a
+ * partially loaded group graph.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+final class GroupSnapshot {
+
+    static final GroupSnapshot EMPTY = new GroupSnapshot(ImmutableMap.of(), null);
+
+    private final ImmutableMap<String, DatastoreGroup> groupMap;
+    private final DatastoreGroup defaultGroup;
+
+    static GroupSnapshot of(Map<String, DatastoreGroup> groupMap, DatastoreGroup previousDefault) {
+        DatastoreGroup defaultGroup = null;
+        if (previousDefault != null && previousDefault.isDefaultGroup()
+                && groupMap.get(previousDefault.getName()) == previousDefault) {
+            defaultGroup = previousDefault;
+        } else {
+            for (DatastoreGroup group : groupMap.values()) {
+                if (group.isDefaultGroup()) {
+                    defaultGroup = group;
+                    break;
+                }
+            }
+        }
+        return new GroupSnapshot(ImmutableMap.copyOf(groupMap), defaultGroup);
+    }
+
+    DatastoreGroup getGroup(String name) {
+        return groupMap.get(name);
+    }
+
+    int size() {
+        return groupMap.size();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import lombok.*;
+import net.vayzd.orbit.datastore.group.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+import static com.google.common.base.Preconditions.*;
+import static java.lang.String.*;
+
+/**
+ * Local copy of the group graph, so a datastore is able to serve groups
+ * right after startup, even if the database is slow or unreachable.
+ * <p>
+ * The file starts with a magic number, the format version, the payload length
+ * and a CRC32 checksum of the payload, which holds the groups as encoded by
+ * the {@link DatastoreCodec}. Snapshots are read from a memory mapped file
+ * and replaced atomically.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class GroupSnapshotFile {
+
+    static final int MAGIC = 0x4F524247; // "ORBG"
+    static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Writes groups which have been encoded by the {@link DatastoreCodec}.
+     *
+     * @param file  the snapshot file
+     * @param bytes the encoded groups
+     * @throws IOException if the file couldn't be written
+     */
+    static void write(File file, byte[] bytes) throws IOException {
+        checkNotNull(file, "File can't be null");
+        checkNotNull(bytes, "Bytes can't be null");
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(bytes.length);
+            output.writeInt((int) checksum.getValue());
+            output.write(bytes);
+        }
+        // a crash while writing never leaves a partially written snapshot behind
+        try {
+            Files.move(temporary.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException error) {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads all groups of the given snapshot, they still have to be resolved
+     * by the {@link PermissionCalculator}.
+     *
+     * @param file the snapshot file
+     * @return all groups mapped to their names
+     * @throws IOException if the file is unreadable, of another version or corrupted
+     */
+    static Map<String, DatastoreGroup> read(File file) throws IOException {
+        checkNotNull(file, "File can't be null");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(format("Group snapshot has an invalid size of %s bytes", size));
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("File isn't a group snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException(format("Unsupported group snapshot version %s", version));
+            }
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length != buffer.remaining()) {
+                throw new IOException("Group snapshot is truncated");
+            }
+            CRC32 actual = new CRC32();
+            actual.update(buffer.slice());
+            if ((int) actual.getValue() != checksum) {
+                throw new IOException("Group snapshot checksum doesn't match");
+            }
+            Map<String, DatastoreGroup> groupMap = new HashMap<>();
+            try {
+                DatastoreCodec.decodeGroups(buffer).forEach(group -> groupMap.put(group.getName(), group));
+            } catch (IllegalArgumentException error) {
+                throw new IOException("Group snapshot is corrupted", error);
+            }
+            return groupMap;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import com.zaxxer.hikari.*;
+import lombok.*;
+
+import java.io.*;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Backend storing all data in an embedded H2 database file, so no database
+ * server is needed.
+ * <p>
+ * The page cache is sized to hold the whole database of a typical server,
+ * so reads are served from memory and only writes touch the file.
+ */
+@Getter
+public class H2Backend implements DatastoreBackend {
+
+    // kilobytes of pages kept in memory
+    public static final int DEFAULT_CACHE_SIZE = 65536;
+
+    private final File file;
+    private final int cacheSize;
+
+    public H2Backend(File file) {
+        this(file, DEFAULT_CACHE_SIZE);
+    }
+
+    public H2Backend(File file, int cacheSize) {
+        checkNotNull(file, "File can't be null");
+        checkArgument(cacheSize > 0, "Cache size must be greater than 0");
+        this.file = file;
+        this.cacheSize = cacheSize;
+    }
+
+    @Override
+    public String getName() {
+        return "H2";
+    }
+
+    @Override
+    public DatastoreDialect getDialect() {
+        return DatastoreDialect.H2;
+    }
+
+    @Override
+    public HikariConfig createConfig(int maximumPoolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(String.format("jdbc:h2:file:%s;MODE=MySQL;DATABASE_TO_LOWER=TRUE;CACHE_SIZE=%s",
+                file.getAbsolutePath(),
+                cacheSize
+        ));
+        config.setDriverClassName("org.h2.Driver");
+        config.setMaximumPoolSize(maximumPoolSize);
+        return config;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import com.zaxxer.hikari.*;
+import lombok.*;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Backend connecting to a MySQL or MariaDB server.
+ */
+@Getter
+public class MySqlBackend implements DatastoreBackend {
+
+    private final DatastoreCredentials credentials;
+    private final DatastoreDialect dialect;
+
+    public MySqlBackend(DatastoreCredentials credentials) {
+        this(credentials, DatastoreDialect.MYSQL);
+    }
+
+    public MySqlBackend(DatastoreCredentials credentials, DatastoreDialect dialect) {
+        checkNotNull(credentials, "Credentials can't be null");
+        checkNotNull(dialect, "Dialect can't be null");
+        checkNotNull(credentials.getHostname(), "Hostname can't be null");
+        checkArgument(credentials.getPort() > 0, "Port must be greater than 0");
+        checkNotNull(credentials.getUsername(), "Username can't be null");
+        checkNotNull(credentials.getPassword(), "Password can't be null");
+        checkNotNull(credentials.getDefaultDatabase(), "Default database can't be null");
+        this.credentials = credentials;
+        this.dialect = dialect;
+    }
+
+    @Override
+    public String getName() {
+        return "MySQL";
+    }
+
+    @Override
+    public HikariConfig createConfig(int maximumPoolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(String.format("jdbc:mysql://%s:%s/%s?autoReconnect=true&characterEncoding=UTF-8",
+                credentials.getHostname(),
+                credentials.getPort(),
+                credentials.getDefaultDatabase()
+        ));
+        // the shipped MariaDB driver accepts jdbc:mysql URLs as well
+        config.setDriverClassName("org.mariadb.jdbc.Driver");
+        config.setUsername(credentials.getUsername());
+        config.setPassword(credentials.getPassword());
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.addDataSourceProperty("useConfigs", "maxPerformance");
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        return config;
+    }
+}
@@ -24,106 +24,172 @@
  */
 package net.vayzd.orbit.datastore;
 
+import com.github.benmanes.caffeine.cache.*;
+import com.github.benmanes.caffeine.cache.stats.*;
+import com.google.common.collect.*;
 import com.zaxxer.hikari.*;
 import lombok.*;
 import net.vayzd.orbit.datastore.group.*;
 
+import java.io.*;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.stream.*;
 import java.util.logging.*;
 
 import static com.google.common.base.Preconditions.*;
 import static java.lang.String.*;
 import static java.util.Arrays.*;
+import static java.util.Collections.*;
 
 @SuppressWarnings("ResultOfMethodCallIgnored")
 public class OrbitDatastore implements Datastore {
 
+    private final DatastoreBackend backend;
     private final HikariConfig config;
     @Setter(AccessLevel.PRIVATE)
     private HikariDataSource dataSource;
     private final Logger logger;
-    private final ExecutorService queue;
-    private final Set<Thread> threadSet = new HashSet<>();
-    private final AtomicLong threadCount = new AtomicLong(0);
-    private final AtomicReference<Thread> primaryThread = new AtomicReference<>();
-    private final AtomicReference<DatastoreGroup> defaultGroup = new AtomicReference<>(null);
-    private final ConcurrentMap<String, DatastoreGroup> cache = new ConcurrentHashMap<>();
-
-    private OrbitDatastore(Logger logger, DatastoreCredentials credentials, Thread primary,
-                           int poolSize) throws Exception {
+    private final Map<DatastoreLane, DatastoreExecutor> executorMap = new EnumMap<>(DatastoreLane.class);
+    private final AtomicReference<GroupSnapshot> snapshot = new AtomicReference<>(GroupSnapshot.EMPTY);
+    private final LoadingCache<UUID, Optional<DatastoreSubject>> subjectCache;
+    // subjects handed out to logins, which players hold for as long as they're online
+    private final Cache<UUID, DatastoreSubject> loginSubjects = Caffeine.newBuilder().weakValues().build();
+    private final SingleFlight<UUID, Optional<DatastoreSubject>> subjectFlight = new SingleFlight<>();
+    private final SingleFlight<String, Optional<DatastoreGroup>> groupFlight = new SingleFlight<>();
+    private final ScheduledExecutorService scheduler;
+    private final BatchLoader<UUID, Optional<DatastoreSubject>> loginBatcher;
+    private final WriteBehindQueue<UUID, PendingWrite> writeBehind;
+    private final int subjectFetchSize;
+    private final long checkCacheSize;
+    private final File groupSnapshotFile;
+    private final AtomicBoolean groupSnapshotQueued = new AtomicBoolean(false);
+    private final Object groupSnapshotLock = new Object();
+
+    private OrbitDatastore(Logger logger, DatastoreBackend backend, Thread primary,
+                           int poolSize, DatastoreSettings settings) throws Exception {
         checkNotNull(logger, "Datastore logger can't be null");
-        checkNotNull(credentials, "Credentials can't be null");
+        checkNotNull(backend, "Backend can't be null");
+        checkNotNull(settings, "Settings can't be null");
         checkArgument(poolSize >= 0, "Pool size must be greater than or equal to 0");
+        checkArgument(settings.getCheckCacheSize() >= 0, "Check cache size must be greater than or equal to 0");
+        checkNotNull(primary, "Primary thread can't be null");
         this.logger = logger;
-        {
-            AtomicReference<ThreadFactory> factoryReference = new AtomicReference<>(
-                    runnable -> {
-                        Thread thread = Executors.defaultThreadFactory().newThread(runnable);
-                        thread.setName("Datastore Thread #" + threadCount.incrementAndGet());
-                        thread.setDaemon(true);
-                        threadSet.add(thread);
-                        return thread;
-                    }
-            );
-            if (poolSize <= 1) {
-                this.queue = Executors.newSingleThreadExecutor(factoryReference.get());
-            } else if (poolSize < Runtime.getRuntime().availableProcessors()) {
-                this.queue = Executors.newFixedThreadPool(poolSize, factoryReference.get());
-            } else {
-                this.queue = Executors.newWorkStealingPool();
+        this.backend = backend;
+        Logger.getLogger("com.zaxxer.hikari").setLevel(Level.OFF);
+        // multiply the async thread count by 2 so there are still connections
+        // available which can be used by spigot async events or netty IO threads for instance
+        HikariConfig config = backend.createConfig(Math.max(4, poolSize * 2));
+        this.config = config;
+        this.subjectFetchSize = Math.max(1, settings.getSubjectFetchSize());
+        this.checkCacheSize = settings.getCheckCacheSize();
+        this.groupSnapshotFile = settings.getGroupSnapshotFile();
+        loadGroupSnapshot();
+        // a warm started datastore keeps trying to connect in the background instead of failing at once
+        config.setInitializationFailFast(snapshot.get().getDefaultGroup() == null);
+        boolean virtual = settings.isVirtualThreads() && DatastoreExecutor.isVirtualThreadSupported();
+        if (settings.isVirtualThreads() && !virtual) {
+            logger.info("Virtual threads require Java 21 or newer, using platform threads instead.");
+        }
+        // the lanes share the asynchronous threads of the pool size, at least one each, the connection
+        // pool is still larger so synchronous callers always find a free connection. Each task runs on
+        // its own virtual thread otherwise, refreshes and bulk work are limited so they can't starve logins
+        int threads = Math.max(1, poolSize);
+        int refreshThreads = Math.max(1, threads / 4);
+        int bulkThreads = Math.max(1, threads / 4);
+        int loginThreads = virtual ? threads : Math.max(1, threads - refreshThreads - bulkThreads);
+        // virtual lanes together run no more tasks than the pool size either, tasks holding
+        // a connection may need another one to resolve uncached groups
+        Semaphore sharedPermits = virtual ? new Semaphore(threads, true) : null;
+        createLane(DatastoreLane.LOGIN, settings.getLoginLaneThreads(), loginThreads, settings, primary,
+                sharedPermits);
+        createLane(DatastoreLane.REFRESH, settings.getRefreshLaneThreads(), refreshThreads, settings, primary,
+                sharedPermits);
+        createLane(DatastoreLane.BULK, settings.getBulkLaneThreads(), bulkThreads, settings, primary,
+                sharedPermits);
+        if (settings.getSubjectCacheSize() > 0) {
+            Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                    .maximumSize(settings.getSubjectCacheSize())
+                    .executor(executorMap.get(DatastoreLane.REFRESH))
+                    .recordStats();
+            if (settings.getSubjectCacheExpireAfter() > 0) {
+                builder.expireAfterWrite(settings.getSubjectCacheExpireAfter(), TimeUnit.SECONDS);
+            }
+            if (settings.getSubjectCacheRefreshAfter() > 0) {
+                builder.refreshAfterWrite(settings.getSubjectCacheRefreshAfter(), TimeUnit.SECONDS);
             }
-            this.primaryThread.set(checkNotNull(primary, "Primary thread can't be null"));
+            this.subjectCache = builder.build(new CacheLoader<UUID, Optional<DatastoreSubject>>() {
+                @Override
+                public Optional<DatastoreSubject> load(UUID uniqueId) throws Exception {
+                    return loadSubject(uniqueId);
+                }
+
+                @Override
+                public Map<UUID, Optional<DatastoreSubject>> loadAll(Iterable<? extends UUID> uniqueIds)
+                        throws Exception {
+                    return selectSubjects(uniqueIds);
+                }
+            });
+        } else {
+            this.subjectCache = null;
         }
-        Logger.getLogger("com.zaxxer.hikari").setLevel(Level.OFF);
-        HikariConfig config = new HikariConfig();
-        {
-            checkNotNull(credentials.getHostname(), "Hostname can't be null");
-            checkArgument(credentials.getPort() > 0, "Port must be greater than 0");
-            checkNotNull(credentials.getUsername(), "Username can't be null");
-            checkNotNull(credentials.getPassword(), "Username can't be null");
-            checkNotNull(credentials.getDefaultDatabase(), "Default ");
-            config.setJdbcUrl(String.format("jdbc:mysql://%s:%s/%s?autoReconnect=true&characterEncoding=UTF-8",
-                    credentials.getHostname(),
-                    credentials.getPort(),
-                    credentials.getDefaultDatabase()
-            ));
-            config.setDriverClassName("com.mysql.jdbc.Driver");
-            config.setUsername(credentials.getUsername());
-            config.setPassword(credentials.getPassword());
-            // multiply the async thread count by 2 so there are still connections
-            // available which can be used by spigot async events or netty IO threads for instance
-            config.setMaximumPoolSize(poolSize >= Runtime.getRuntime().availableProcessors()
-                    ? (Runtime.getRuntime().availableProcessors() * 2) + 1
-                    : poolSize * 2
+        boolean loginBatching = settings.getLoginBatchWindow() > 0 && settings.getLoginBatchSize() > 1;
+        boolean writingBehind = settings.getWriteBehindInterval() > 0 && settings.getWriteBehindBatchSize() > 0;
+        if (loginBatching || writingBehind || groupSnapshotFile != null) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                thread.setName("Datastore Scheduler Thread");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.scheduler = null;
+        }
+        if (loginBatching) {
+            this.loginBatcher = new BatchLoader<>(
+                    uniqueIds -> subjectCache != null ? subjectCache.getAll(uniqueIds) : selectSubjects(uniqueIds),
+                    executorMap.get(DatastoreLane.LOGIN),
+                    scheduler,
+                    settings.getLoginBatchWindow(),
+                    settings.getLoginBatchSize()
             );
-            config.addDataSourceProperty("useConfigs", "maxPerformance");
-            config.addDataSourceProperty("cachePrepStmts", "true");
-            config.addDataSourceProperty("prepStmtCacheSize", "250");
-            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        } else {
+            this.loginBatcher = null;
+        }
+        if (writingBehind) {
+            this.writeBehind = new WriteBehindQueue<>(
+                    this::flushSubjects,
+                    PendingWrite::merge,
+                    executorMap.get(DatastoreLane.BULK),
+                    scheduler,
+                    logger,
+                    settings.getWriteBehindInterval(),
+                    settings.getWriteBehindBatchSize()
+            );
+        } else {
+            this.writeBehind = null;
         }
-        this.config = config;
     }
 
     @Override
     public void connect(DataCallback<Boolean> uponSchemaCompletion) {
         checkNotNull(uponSchemaCompletion);
-        setDataSource(new HikariDataSource(config));
-        submitTask(() -> {
+        // connecting again only retries the schema, the pool reconnects on its own
+        if (dataSource == null) {
+            setDataSource(new HikariDataSource(config));
+        }
+        submitTask(DatastoreLane.REFRESH, () -> {
             try (Connection connection = getConnection()) {
-                Statement statement = connection.createStatement();
-                for (String tableSchema : TABLE_SCHEMA) {
-                    statement.executeUpdate(tableSchema);
-                }
-                statement.close();
+                DatastoreSchema.ensure(connection, backend.getDialect(), logger);
                 uponSchemaCompletion.complete(true, null);
             } catch (SQLException error) {
                 uponSchemaCompletion.complete(false, error);
                 logger.log(Level.WARNING, "Unable to ensure default table schema!", error);
             }
-        });
+        }, uponSchemaCompletion);
     }
 
     @Override
@@ -154,81 +220,69 @@ public class OrbitDatastore implements Datastore {
 
     @Override
     public void fetchAndCacheGroups() {
-        submitTask(() -> {
-            cache.clear();
+        fetchAndCacheGroups((result, error) -> {
+            if (error instanceof RejectedExecutionException) {
+                logger.log(Level.WARNING, "Datastore queue is full, rejected task!", error);
+            }
+        });
+    }
+
+    @Override
+    public void fetchAndCacheGroups(DataCallback<Boolean> uponCompletion) {
+        checkNotNull(uponCompletion);
+        submitTask(DatastoreLane.REFRESH, () -> {
+            Map<String, DatastoreGroup> fetched;
             try (Connection connection = getConnection()) {
-                PreparedStatement statement = connection.prepareStatement(format(
-                        "SELECT * FROM %s",
-                        table(DatastoreGroup.class)
-                ));
-                ResultSet set = statement.executeQuery();
-                while (!set.isClosed() && set.next()) {
-                    DatastoreGroup group = new DatastoreGroup();
-                    group.readFrom(set);
-                    cache.putIfAbsent(group.getName(), group);
-                }
-                set.close();
-                statement.close();
+                fetched = selectGroups(connection, null);
             } catch (SQLException error) {
+                // keep serving the previous snapshot
                 logger.log(Level.WARNING, "Unable to fetch and locally cache groups!", error);
-            }
-            if (cache.isEmpty()) {
+                uponCompletion.complete(false, error);
                 return;
             }
-            cache.values().forEach(group -> {
-                if (group != null) {
-                    group.updatePermissionSet(calculatorOf(group).computePermissionSet());
-                }
-            });
-            for (DatastoreGroup group : cache.values()) {
-                if (group.isDefaultGroup()) {
-                    defaultGroup.set(group);
-                    break;
-                }
+            if (fetched.isEmpty()) {
+                uponCompletion.complete(false, null);
+                return;
             }
+            GroupSnapshot published = replaceSnapshot(fetched);
             logger.info(format("Successfully fetched and locally cached %s group%s!",
-                    cache.size(),
-                    cache.size() > 1 ? "s" : ""
+                    published.size(),
+                    published.size() > 1 ? "s" : ""
             ));
-        });
+            queueGroupSnapshotSave();
+            uponCompletion.complete(true, null);
+        }, uponCompletion);
     }
 
     @Override
     public Optional<DatastoreGroup> getGroup(String name) {
         checkNotNull(name);
-        AtomicReference<DatastoreGroup> reference = new AtomicReference<>(null);
-        if (cache.containsKey(name)) {
-            reference.set(cache.getOrDefault(name, null));
-        } else {
-            try (Connection connection = getConnection()) {
-                PreparedStatement statement = connection.prepareStatement(format(
-                        "SELECT * FROM %s WHERE name=?",
-                        table(DatastoreGroup.class)
-                ));
-                statement.setString(1, name);
-                ResultSet set = statement.executeQuery();
-                if (!set.isClosed() && set.next()) {
-                    DatastoreGroup group = new DatastoreGroup();
-                    group.readFrom(set);
-                    cache.putIfAbsent(group.getName(), group);
-                    reference.set(group);
-                }
-                set.close();
-                statement.close();
-            } catch (SQLException error) {
-                logger.log(Level.WARNING, format("Unable to get group with name='%s'!", name), error);
-            }
-            DatastoreGroup group = reference.get();
-            if (group != null) {
-                group.updatePermissionSet(calculatorOf(group).computePermissionSet());
-            }
+        DatastoreGroup cached = snapshot.get().getGroup(name);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        try {
+            // concurrent lookups of the same uncached group share one query
+            return groupFlight.execute(name, () -> loadGroup(name));
+        } catch (Exception error) {
+            logger.log(Level.WARNING, format("Unable to get group with name='%s'!", name), error);
+            return Optional.empty();
         }
-        return Optional.ofNullable(reference.get());
     }
 
     @Override
     public void getGroup(String name, DataCallback<Optional<DatastoreGroup>> callback) {
-        fulfill(callback, () -> getGroup(name));
+        fulfill(callback, DatastoreLane.LOGIN, () -> getGroup(name));
+    }
+
+    @Override
+    public CompletableFuture<Optional<DatastoreGroup>> getGroupAsync(String name) {
+        checkNotNull(name);
+        DatastoreGroup cached = snapshot.get().getGroup(name);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+        return supply(DatastoreLane.LOGIN, () -> getGroup(name));
     }
 
     @Override
@@ -238,12 +292,17 @@ public class OrbitDatastore implements Datastore {
 
     @Override
     public void hasGroup(String name, DataCallback<Boolean> callback) {
-        fulfill(callback, () -> hasGroup(name));
+        fulfill(callback, DatastoreLane.LOGIN, () -> hasGroup(name));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> hasGroupAsync(String name) {
+        return getGroupAsync(name).thenApply(Optional::isPresent);
     }
 
     @Override
     public Optional<DatastoreGroup> getDefaultGroup() {
-        return Optional.ofNullable(defaultGroup.get());
+        return Optional.ofNullable(snapshot.get().getDefaultGroup());
     }
 
     @Override
@@ -254,117 +313,227 @@ public class OrbitDatastore implements Datastore {
     @Override
     public boolean insertGroup(DatastoreGroup group) {
         checkNotNull(group);
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(format(
-                    "INSERT INTO %s(name, parents, default_group, display_name, prefix, suffix, color_char, " +
-                            "tab_order, permissions) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
-                    table(DatastoreGroup.class)
-            ));
-            statement.setString(1, group.getName());
-            statement.setString(2, convertSetToString(group.getParentSet()));
-            statement.setBoolean(3, group.isDefaultGroup());
-            statement.setString(4, group.getDisplayName());
-            statement.setString(5, group.getPrefix());
-            statement.setString(6, group.getSuffix());
-            statement.setString(7, String.valueOf(group.getColorChar()));
-            statement.setInt(8, group.getTabOrder());
-            statement.setString(9, convertSetToString(group.getPermissionSet()));
-            statement.executeUpdate();
-            statement.close();
-            return true;
+        // exactly the written attributes are marked as persisted, later changes are stored next time
+        DatastoreGroup.Snapshot written = group.snapshot();
+        try {
+            transaction(connection -> {
+                // the legacy parents and permissions columns are no longer read
+                PreparedStatement statement = connection.prepareStatement(format(
+                        "INSERT INTO %s(name, parents, default_group, display_name, prefix, suffix, color_char, " +
+                                "tab_order, permissions) VALUES (?, '', ?, ?, ?, ?, ?, ?, '')",
+                        DatastoreSchema.GROUPS
+                ));
+                statement.setString(1, group.getName());
+                statement.setBoolean(2, written.isDefaultGroup());
+                statement.setString(3, written.getDisplayName());
+                statement.setString(4, written.getPrefix());
+                statement.setString(5, written.getSuffix());
+                statement.setString(6, String.valueOf(written.getColorChar()));
+                statement.setInt(7, written.getTabOrder());
+                statement.executeUpdate();
+                statement.close();
+                insertRows(connection, DatastoreSchema.GROUP_PARENTS, "group_name", "parent", group.getName(),
+                        written.getParentSet());
+                insertRows(connection, DatastoreSchema.GROUP_PERMISSIONS, "group_name", "node", group.getName(),
+                        written.getPermissionSet());
+            });
         } catch (SQLException error) {
             logger.log(Level.WARNING, format("Unable to insert group with name='%s'!", group.getName()), error);
             return false;
         }
+        group.markPersisted(written);
+        publish(singletonList(group), emptyList());
+        return true;
     }
 
     @Override
     public void insertGroup(DatastoreGroup group, DataCallback<Boolean> uponCompletion) {
-        fulfill(uponCompletion, () -> insertGroup(group));
+        fulfill(uponCompletion, DatastoreLane.BULK, () -> insertGroup(group));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> insertGroupAsync(DatastoreGroup group) {
+        return supply(DatastoreLane.BULK, () -> insertGroup(group));
     }
 
     @Override
     public boolean updateGroup(DatastoreGroup group) {
         checkNotNull(group);
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(format(
-                    "UPDATE %s SET parents=?, default_group=?, display_name=?, prefix=?, suffix=?, color_char=?, " +
-                            "tab_order=?, permissions=? WHERE name=?",
-                    table(DatastoreGroup.class)
-            ));
-            statement.setString(1, convertSetToString(group.getParentSet()));
-            statement.setBoolean(2, group.isDefaultGroup());
-            statement.setString(3, group.getDisplayName());
-            statement.setString(4, group.getPrefix());
-            statement.setString(5, group.getSuffix());
-            statement.setString(6, String.valueOf(group.getColorChar()));
-            statement.setInt(7, group.getTabOrder());
-            statement.setString(8, convertSetToString(group.getPermissionSet()));
-            statement.setString(9, group.getName());
-            statement.executeUpdate();
-            statement.close();
+        // groups which haven't been loaded from the datastore are rewritten entirely
+        boolean persisted = group.isPersisted();
+        // exactly the written attributes are marked as persisted, later changes are stored next time
+        DatastoreGroup.Snapshot written = group.snapshot();
+        Map<String, Object> columnMap = group.getChangedColumnMap(written);
+        SetDelta parentDelta = group.getParentDelta(written);
+        SetDelta permissionDelta = group.getPermissionDelta(written);
+        if (columnMap.isEmpty() && parentDelta.isEmpty() && permissionDelta.isEmpty()) {
             return true;
+        }
+        try {
+            transaction(connection -> {
+                updateColumns(connection, DatastoreSchema.GROUPS, columnMap, "name", group.getName());
+                if (!persisted) {
+                    deleteRows(connection, DatastoreSchema.GROUP_PARENTS, "group_name", group.getName());
+                    deleteRows(connection, DatastoreSchema.GROUP_PERMISSIONS, "group_name", group.getName());
+                }
+                insertRows(connection, DatastoreSchema.GROUP_PARENTS, "group_name", "parent", group.getName(),
+                        parentDelta.getAddedSet());
+                deleteRows(connection, DatastoreSchema.GROUP_PARENTS, "group_name", "parent", group.getName(),
+                        parentDelta.getRemovedSet());
+                insertRows(connection, DatastoreSchema.GROUP_PERMISSIONS, "group_name", "node", group.getName(),
+                        permissionDelta.getAddedSet());
+                deleteRows(connection, DatastoreSchema.GROUP_PERMISSIONS, "group_name", "node", group.getName(),
+                        permissionDelta.getRemovedSet());
+            });
         } catch (SQLException error) {
             logger.log(Level.WARNING, format("Unable to update group with name='%s'!", group.getName()), error);
             return false;
         }
+        group.markPersisted(written);
+        publish(singletonList(group), emptyList());
+        return true;
     }
 
     @Override
     public void updateGroup(DatastoreGroup group, DataCallback<Boolean> uponCompletion) {
-        fulfill(uponCompletion, () -> updateGroup(group));
+        fulfill(uponCompletion, DatastoreLane.BULK, () -> updateGroup(group));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateGroupAsync(DatastoreGroup group) {
+        return supply(DatastoreLane.BULK, () -> updateGroup(group));
     }
 
     @Override
     public boolean deleteGroup(DatastoreGroup group) {
         checkNotNull(group);
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(format(
-                    "DELETE FROM %s WHERE name=?",
-                    table(DatastoreGroup.class)
-            ));
-            statement.setString(1, group.getName());
-            statement.executeUpdate();
-            statement.close();
-            return true;
+        try {
+            transaction(connection -> {
+                deleteRows(connection, DatastoreSchema.GROUP_PARENTS, "group_name", group.getName());
+                deleteRows(connection, DatastoreSchema.GROUP_PERMISSIONS, "group_name", group.getName());
+                deleteRows(connection, DatastoreSchema.GROUPS, "name", group.getName());
+            });
         } catch (SQLException error) {
             logger.log(Level.WARNING, format("Unable to delete group with name='%s'!", group.getName()), error);
             return false;
         }
+        publish(emptyList(), singletonList(group.getName()));
+        return true;
     }
 
     @Override
     public void deleteGroup(DatastoreGroup group, DataCallback<Boolean> uponCompletion) {
-        fulfill(uponCompletion, () -> deleteGroup(group));
+        fulfill(uponCompletion, DatastoreLane.BULK, () -> deleteGroup(group));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteGroupAsync(DatastoreGroup group) {
+        return supply(DatastoreLane.BULK, () -> deleteGroup(group));
     }
 
     @Override
     public Optional<DatastoreSubject> getSubject(UUID uniqueId) {
         checkNotNull(uniqueId);
-        AtomicReference<DatastoreSubject> reference = new AtomicReference<>(null);
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(format(
-                    "SELECT * FROM %s WHERE uniqueId=?",
-                    table(DatastoreSubject.class)
-            ));
-            statement.setString(1, uniqueId.toString());
-            ResultSet set = statement.executeQuery();
-            if (!set.isClosed() && set.next()) {
-                DatastoreSubject subject = new DatastoreSubject();
-                subject.readFrom(set);
-                reference.set(subject);
-            }
-            set.close();
-            statement.close();
-        } catch (SQLException error) {
+        try {
+            return lookupSubject(uniqueId);
+        } catch (Exception error) {
             logger.log(Level.WARNING, format("Unable to get subject with UUID='%s'!", uniqueId.toString()), error);
+            return Optional.empty();
         }
-        return Optional.ofNullable(finalizeSubject(reference.get()));
     }
 
     @Override
     public void getSubject(UUID uniqueId, DataCallback<Optional<DatastoreSubject>> callback) {
-        fulfill(callback, () -> getSubject(uniqueId));
+        fulfill(callback, DatastoreLane.LOGIN, () -> getSubject(uniqueId));
+    }
+
+    @Override
+    public CompletableFuture<Optional<DatastoreSubject>> getSubjectAsync(UUID uniqueId) {
+        checkNotNull(uniqueId);
+        if (subjectCache != null) {
+            Optional<DatastoreSubject> cached = subjectCache.getIfPresent(uniqueId);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        return supply(DatastoreLane.LOGIN, () -> getSubject(uniqueId));
+    }
+
+    @Override
+    public Map<UUID, DatastoreSubject> getSubjects(Collection<UUID> uniqueIds) {
+        checkNotNull(uniqueIds);
+        Map<UUID, DatastoreSubject> subjectMap = new HashMap<>();
+        try {
+            Map<UUID, Optional<DatastoreSubject>> loaded = subjectCache != null
+                    ? subjectCache.getAll(uniqueIds)
+                    : selectSubjects(uniqueIds);
+            loaded.forEach((uniqueId, subject) -> subject.ifPresent(present -> subjectMap.put(uniqueId, present)));
+        } catch (Exception error) {
+            logger.log(Level.WARNING, format("Unable to get %s subjects!", uniqueIds.size()), error);
+        }
+        return subjectMap;
+    }
+
+    @Override
+    public void getSubjects(Collection<UUID> uniqueIds, DataCallback<Map<UUID, DatastoreSubject>> callback) {
+        fulfill(callback, DatastoreLane.BULK, () -> getSubjects(uniqueIds));
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, DatastoreSubject>> getSubjectsAsync(Collection<UUID> uniqueIds) {
+        return supply(DatastoreLane.BULK, () -> getSubjects(uniqueIds));
+    }
+
+    @Override
+    public Optional<DatastoreSubject> getLoginSubject(UUID uniqueId) {
+        checkNotNull(uniqueId);
+        if (loginBatcher == null) {
+            return trackLoginSubject(getSubject(uniqueId));
+        }
+        try {
+            return loadLoginSubject(uniqueId).get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException error) {
+            logger.log(Level.WARNING, format("Unable to get subject with UUID='%s'!", uniqueId.toString()),
+                    error.getCause());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void getLoginSubject(UUID uniqueId, DataCallback<Optional<DatastoreSubject>> callback) {
+        checkNotNull(uniqueId);
+        checkNotNull(callback);
+        if (loginBatcher == null) {
+            getSubject(uniqueId, (subject, error) ->
+                    callback.complete(subject != null ? trackLoginSubject(subject) : null, error));
+            return;
+        }
+        // completes on the thread which ran the batch, without parking the caller
+        loadLoginSubject(uniqueId).whenComplete((subject, error) -> {
+            if (error != null) {
+                logger.log(Level.WARNING, format("Unable to get subject with UUID='%s'!", uniqueId.toString()),
+                        error);
+            }
+            callback.complete(subject, error);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<DatastoreSubject>> getLoginSubjectAsync(UUID uniqueId) {
+        checkNotNull(uniqueId);
+        if (loginBatcher == null) {
+            if (subjectCache != null) {
+                Optional<DatastoreSubject> cached = subjectCache.getIfPresent(uniqueId);
+                if (cached != null) {
+                    return CompletableFuture.completedFuture(trackLoginSubject(cached));
+                }
+            }
+            return supply(DatastoreLane.LOGIN, () -> trackLoginSubject(lookupSubject(uniqueId)));
+        }
+        return loadLoginSubject(uniqueId);
     }
 
     @Override
@@ -374,7 +543,12 @@ public class OrbitDatastore implements Datastore {
 
     @Override
     public void hasSubject(UUID uniqueId, DataCallback<Boolean> callback) {
-        fulfill(callback, () -> hasSubject(uniqueId));
+        fulfill(callback, DatastoreLane.LOGIN, () -> hasSubject(uniqueId));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> hasSubjectAsync(UUID uniqueId) {
+        return getSubjectAsync(uniqueId).thenApply(Optional::isPresent);
     }
 
     @Override
@@ -382,17 +556,10 @@ public class OrbitDatastore implements Datastore {
         checkNotNull(name);
         AtomicReference<List<DatastoreSubject>> reference = new AtomicReference<>(new ArrayList<>());
         try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(format(
-                    "SELECT * FROM %s WHERE group_name=?",
-                    table(DatastoreSubject.class)
-            ));
+            PreparedStatement statement = connection.prepareStatement(selectSubjectsWhere("s.group_name=?"));
             statement.setString(1, name);
             ResultSet set = statement.executeQuery();
-            while (!set.isClosed() && set.next()) {
-                DatastoreSubject subject = new DatastoreSubject();
-                subject.readFrom(set);
-                reference.get().add(subject);
-            }
+            reference.get().addAll(readSubjects(set));
             set.close();
             statement.close();
         } catch (SQLException error) {
@@ -407,123 +574,1148 @@ public class OrbitDatastore implements Datastore {
 
     @Override
     public void getSubjectListByGroup(String name, DataCallback<List<DatastoreSubject>> callback) {
-        fulfill(callback, () -> getSubjectListByGroup(name));
+        fulfill(callback, DatastoreLane.BULK, () -> getSubjectListByGroup(name));
     }
 
     @Override
-    public boolean insertSubject(DatastoreSubject subject) {
-        checkNotNull(subject);
+    public CompletableFuture<List<DatastoreSubject>> getSubjectListByGroupAsync(String name) {
+        return supply(DatastoreLane.BULK, () -> getSubjectListByGroup(name));
+    }
+
+    @Override
+    public SubjectPage getSubjectPageByGroup(String name, UUID after, int limit) {
+        checkNotNull(name);
+        checkArgument(limit > 0, "Limit must be greater than 0");
+        List<DatastoreSubject> subjectList = new ArrayList<>();
         try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(format(
-                    "INSERT INTO %s(uniqueId, group_name, permissions) VALUES (?, ?, ?)",
-                    table(DatastoreSubject.class)
-            ));
-            statement.setString(1, subject.getUniqueId().toString());
-            statement.setString(2, subject.getGroup() == null
-                    ? subject.getGroupName()
-                    : subject.getGroup().getName()
-            );
-            statement.setString(3, convertSetToString(subject.getPermissionSet()));
-            statement.executeUpdate();
+            PreparedStatement statement = connection.prepareStatement(selectSubjectPage(after != null));
+            statement.setFetchSize(subjectFetchSize);
+            statement.setString(1, name);
+            if (after != null) {
+                statement.setBytes(2, UniqueIds.toBytes(after));
+            }
+            statement.setInt(after != null ? 3 : 2, limit);
+            ResultSet set = statement.executeQuery();
+            subjectList.addAll(readSubjects(set));
+            set.close();
             statement.close();
+        } catch (SQLException error) {
+            // an empty page would end the iteration as if all subjects had been seen
+            throw new DatastoreException(format("Unable to get subject page by group with name='%s'!", name),
+                    error);
+        }
+        if (subjectList.isEmpty()) {
+            return SubjectPage.EMPTY;
+        }
+        subjectList.forEach(this::finalizeSubject);
+        // a page which isn't full has to be the last one
+        UUID next = subjectList.size() < limit ? null : subjectList.get(subjectList.size() - 1).getUniqueId();
+        return new SubjectPage(subjectList, next);
+    }
+
+    @Override
+    public void getSubjectPageByGroup(String name, UUID after, int limit, DataCallback<SubjectPage> callback) {
+        fulfill(callback, DatastoreLane.BULK, () -> getSubjectPageByGroup(name, after, limit));
+    }
+
+    @Override
+    public CompletableFuture<SubjectPage> getSubjectPageByGroupAsync(String name, UUID after, int limit) {
+        return supply(DatastoreLane.BULK, () -> getSubjectPageByGroup(name, after, limit));
+    }
+
+    @Override
+    public Stream<DatastoreSubject> streamSubjectsByGroup(String name) {
+        checkNotNull(name);
+        int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<DatastoreSubject>(
+                Long.MAX_VALUE, characteristics) {
+
+            private SubjectPage page;
+            private int index;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super DatastoreSubject> action) {
+                while (page == null || index == page.getSubjectList().size()) {
+                    if (page != null && !page.hasNext()) {
+                        return false;
+                    }
+                    page = getSubjectPageByGroup(name, page == null ? null : page.getNextUniqueId(),
+                            subjectFetchSize);
+                    index = 0;
+                }
+                action.accept(page.getSubjectList().get(index++));
+                return true;
+            }
+        }, false);
+    }
+
+    @Override
+    public void forEachSubjectByGroup(String name, Consumer<? super DatastoreSubject> consumer) {
+        checkNotNull(consumer);
+        streamSubjectsByGroup(name).forEach(consumer);
+    }
+
+    @Override
+    public CompletableFuture<Void> forEachSubjectByGroupAsync(String name,
+                                                             Consumer<? super DatastoreSubject> consumer) {
+        return supply(DatastoreLane.BULK, () -> {
+            forEachSubjectByGroup(name, consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean insertSubject(DatastoreSubject subject) {
+        checkNotNull(subject);
+        if (writeBehind != null) {
+            writeBehind(subject, true);
+            return true;
+        }
+        // exactly the written attributes are marked as persisted, later changes are stored next time
+        DatastoreSubject.Snapshot written = subject.snapshot();
+        try {
+            transaction(connection -> {
+                // the legacy permissions column is no longer read
+                PreparedStatement statement = connection.prepareStatement(format(
+                        "INSERT INTO %s(uniqueId, group_name, permissions) VALUES (?, ?, '')",
+                        DatastoreSchema.SUBJECTS
+                ));
+                statement.setBytes(1, UniqueIds.toBytes(subject.getUniqueId()));
+                statement.setString(2, written.getGroupName());
+                statement.executeUpdate();
+                statement.close();
+                insertRows(connection, DatastoreSchema.SUBJECT_PERMISSIONS, "uniqueId", "node",
+                        UniqueIds.toBytes(subject.getUniqueId()), written.getPermissionSet());
+            });
+            subject.markPersisted(written);
             return true;
         } catch (SQLException error) {
             logger.log(Level.WARNING, format("Unable to insert player with UUID='%s'!",
                     subject.getUniqueId().toString()),
                     error);
             return false;
+        } finally {
+            invalidateSubject(subject.getUniqueId());
         }
     }
 
     @Override
     public void insertSubject(DatastoreSubject subject, DataCallback<Boolean> uponCompletion) {
-        fulfill(uponCompletion, () -> insertSubject(subject));
+        fulfill(uponCompletion, DatastoreLane.BULK, () -> insertSubject(subject));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> insertSubjectAsync(DatastoreSubject subject) {
+        return supply(DatastoreLane.BULK, () -> insertSubject(subject));
     }
 
     @Override
     public boolean updateSubject(DatastoreSubject subject) {
         checkNotNull(subject);
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(format(
-                    "UPDATE %s SET group_name=?, permissions=? WHERE uniqueId=?",
-                    table(DatastoreSubject.class)
-            ));
-            statement.setString(1, subject.getGroup() == null
-                    ? subject.getGroupName()
-                    : subject.getGroup().getName()
-            );
-            statement.setString(2, convertSetToString(subject.getPermissionSet()));
-            statement.setString(3, subject.getUniqueId().toString());
-            statement.executeUpdate();
-            statement.close();
+        // subjects which haven't been loaded from the datastore are rewritten entirely
+        boolean persisted = subject.isPersisted();
+        // exactly the written attributes are marked as persisted, later changes are stored next time
+        DatastoreSubject.Snapshot written = subject.snapshot();
+        Map<String, Object> columnMap = subject.getChangedColumnMap(written);
+        SetDelta permissionDelta = subject.getPermissionDelta(written);
+        boolean unchanged = columnMap.isEmpty() && permissionDelta.isEmpty();
+        if (writeBehind != null) {
+            // a pending write is replaced even if the subject has been changed back, it'd store the old state otherwise
+            if (!unchanged || writeBehind.get(subject.getUniqueId()) != null) {
+                writeBehind(subject, false);
+            }
+            return true;
+        }
+        if (unchanged) {
+            return true;
+        }
+        byte[] uniqueId = UniqueIds.toBytes(subject.getUniqueId());
+        try {
+            transaction(connection -> {
+                updateColumns(connection, DatastoreSchema.SUBJECTS, columnMap, "uniqueId", uniqueId);
+                if (!persisted) {
+                    deleteRows(connection, DatastoreSchema.SUBJECT_PERMISSIONS, "uniqueId", uniqueId);
+                }
+                insertRows(connection, DatastoreSchema.SUBJECT_PERMISSIONS, "uniqueId", "node", uniqueId,
+                        permissionDelta.getAddedSet());
+                deleteRows(connection, DatastoreSchema.SUBJECT_PERMISSIONS, "uniqueId", "node", uniqueId,
+                        permissionDelta.getRemovedSet());
+            });
+            subject.markPersisted(written);
             return true;
         } catch (SQLException error) {
             logger.log(Level.WARNING, format("Unable to update player with UUID='%s'!",
                     subject.getUniqueId().toString()),
                     error);
             return false;
+        } finally {
+            invalidateSubject(subject.getUniqueId());
         }
     }
 
     @Override
     public void updateSubject(DatastoreSubject subject, DataCallback<Boolean> uponCompletion) {
-        fulfill(uponCompletion, () -> updateSubject(subject));
+        fulfill(uponCompletion, DatastoreLane.BULK, () -> updateSubject(subject));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateSubjectAsync(DatastoreSubject subject) {
+        return supply(DatastoreLane.BULK, () -> updateSubject(subject));
     }
 
     @Override
     public boolean deleteSubject(DatastoreSubject subject) {
         checkNotNull(subject);
-        try (Connection connection = getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(format(
-                    "DELETE FROM %s WHERE uniqueId=?",
-                    table(DatastoreSubject.class)
-            ));
-            statement.setString(1, subject.getUniqueId().toString());
-            statement.executeUpdate();
-            statement.close();
+        if (writeBehind != null) {
+            // waits for a running flush, so it can't store the subject again after it has been deleted
+            writeBehind.remove(subject.getUniqueId());
+        }
+        try {
+            transaction(connection -> {
+                byte[] uniqueId = UniqueIds.toBytes(subject.getUniqueId());
+                deleteRows(connection, DatastoreSchema.SUBJECT_PERMISSIONS, "uniqueId", uniqueId);
+                deleteRows(connection, DatastoreSchema.SUBJECTS, "uniqueId", uniqueId);
+            });
             return true;
         } catch (SQLException error) {
             logger.log(Level.WARNING, format("Unable to delete player with UUID='%s'!",
                     subject.getUniqueId().toString()),
                     error);
             return false;
+        } finally {
+            invalidateSubject(subject.getUniqueId());
         }
     }
 
     @Override
     public void deleteSubject(DatastoreSubject subject, DataCallback<Boolean> uponCompletion) {
-        fulfill(uponCompletion, () -> deleteSubject(subject));
+        fulfill(uponCompletion, DatastoreLane.BULK, () -> deleteSubject(subject));
     }
 
     @Override
-    public void close() throws Exception {
-        if (dataSource.isClosed()) {
-            throw new RuntimeException("Connection is already closed");
-        }
-        dataSource.close();
+    public CompletableFuture<Boolean> deleteSubjectAsync(DatastoreSubject subject) {
+        return supply(DatastoreLane.BULK, () -> deleteSubject(subject));
     }
 
-    private String table(Class<? extends DatastoreEntry> from) {
-        return checkNotNull(from, "DataStoreEntry can't be null")
-                .getAnnotation(DatastoreTable.class).name();
+    @Override
+    public boolean grantGroupPermission(String name, String node) {
+        checkNotNull(name);
+        checkNotNull(node);
+        try {
+            transaction(connection -> insertRows(connection, DatastoreSchema.GROUP_PERMISSIONS, "group_name", "node",
+                    name, singletonList(node)));
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to grant '%s' to group with name='%s'!", node, name), error);
+            return false;
+        }
+        updateCachedPermissionSet(name, permissionSet -> permissionSet.add(node));
+        return true;
     }
 
-    private PermissionCalculator calculatorOf(DatastoreGroup group) {
-        checkNotNull(group);
-        return PermissionCalculator.of(group, this);
+    @Override
+    public CompletableFuture<Boolean> grantGroupPermissionAsync(String name, String node) {
+        return supply(DatastoreLane.BULK, () -> grantGroupPermission(name, node));
     }
 
-    private <T> String convertSetToString(final Set<T> set) {
-        checkNotNull(set);
-        AtomicInteger remaining = new AtomicInteger(set.size());
-        StringBuilder builder = new StringBuilder();
-        set.forEach(nextEntry -> {
-            builder.append(nextEntry);
-            if (remaining.decrementAndGet() != 0) {
-                builder.append(";");
-            }
-        });
-        return builder.toString();
+    @Override
+    public boolean revokeGroupPermission(String name, String node) {
+        checkNotNull(name);
+        checkNotNull(node);
+        try {
+            transaction(connection -> deleteRows(connection, DatastoreSchema.GROUP_PERMISSIONS, "group_name", "node",
+                    name, singletonList(node)));
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to revoke '%s' from group with name='%s'!", node, name), error);
+            return false;
+        }
+        updateCachedPermissionSet(name, permissionSet -> permissionSet.remove(node));
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> revokeGroupPermissionAsync(String name, String node) {
+        return supply(DatastoreLane.BULK, () -> revokeGroupPermission(name, node));
+    }
+
+    @Override
+    public boolean grantSubjectPermission(UUID uniqueId, String node) {
+        checkNotNull(uniqueId);
+        checkNotNull(node);
+        flushPendingWrite(uniqueId);
+        try {
+            transaction(connection -> insertRows(connection, DatastoreSchema.SUBJECT_PERMISSIONS, "uniqueId", "node",
+                    UniqueIds.toBytes(uniqueId), singletonList(node)));
+            return true;
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to grant '%s' to player with UUID='%s'!", node,
+                    uniqueId.toString()),
+                    error);
+            return false;
+        } finally {
+            invalidateSubject(uniqueId);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> grantSubjectPermissionAsync(UUID uniqueId, String node) {
+        return supply(DatastoreLane.BULK, () -> grantSubjectPermission(uniqueId, node));
+    }
+
+    @Override
+    public boolean revokeSubjectPermission(UUID uniqueId, String node) {
+        checkNotNull(uniqueId);
+        checkNotNull(node);
+        flushPendingWrite(uniqueId);
+        try {
+            transaction(connection -> deleteRows(connection, DatastoreSchema.SUBJECT_PERMISSIONS, "uniqueId",
+                    "node", UniqueIds.toBytes(uniqueId), singletonList(node)));
+            return true;
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to revoke '%s' from player with UUID='%s'!", node,
+                    uniqueId.toString()),
+                    error);
+            return false;
+        } finally {
+            invalidateSubject(uniqueId);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> revokeSubjectPermissionAsync(UUID uniqueId, String node) {
+        return supply(DatastoreLane.BULK, () -> revokeSubjectPermission(uniqueId, node));
+    }
+
+    @Override
+    public List<String> getGroupNamesWithPermission(String node) {
+        checkNotNull(node);
+        List<String> nameList = new ArrayList<>();
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = connection.prepareStatement(format(
+                    "SELECT group_name FROM %s WHERE node=?",
+                    DatastoreSchema.GROUP_PERMISSIONS
+            ));
+            statement.setString(1, node);
+            ResultSet set = statement.executeQuery();
+            while (!set.isClosed() && set.next()) {
+                nameList.add(set.getString(1));
+            }
+            set.close();
+            statement.close();
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to get groups with permission '%s'!", node), error);
+        }
+        return nameList;
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getGroupNamesWithPermissionAsync(String node) {
+        return supply(DatastoreLane.BULK, () -> getGroupNamesWithPermission(node));
+    }
+
+    @Override
+    public List<UUID> getSubjectIdsWithPermission(String node) {
+        checkNotNull(node);
+        List<UUID> uniqueIdList = new ArrayList<>();
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = connection.prepareStatement(format(
+                    "SELECT uniqueId FROM %s WHERE node=?",
+                    DatastoreSchema.SUBJECT_PERMISSIONS
+            ));
+            statement.setString(1, node);
+            ResultSet set = statement.executeQuery();
+            while (!set.isClosed() && set.next()) {
+                uniqueIdList.add(UniqueIds.fromBytes(set.getBytes(1)));
+            }
+            set.close();
+            statement.close();
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to get subjects with permission '%s'!", node), error);
+        }
+        return uniqueIdList;
+    }
+
+    @Override
+    public CompletableFuture<List<UUID>> getSubjectIdsWithPermissionAsync(String node) {
+        return supply(DatastoreLane.BULK, () -> getSubjectIdsWithPermission(node));
+    }
+
+    @Override
+    public long countSubjectsByGroup(String name) {
+        checkNotNull(name);
+        long count = 0;
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = connection.prepareStatement(format(
+                    "SELECT COUNT(*) FROM %s WHERE group_name=?",
+                    DatastoreSchema.SUBJECTS
+            ));
+            statement.setString(1, name);
+            ResultSet set = statement.executeQuery();
+            if (set.next()) {
+                count = set.getLong(1);
+            }
+            set.close();
+            statement.close();
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to count subjects by group with name='%s'!", name), error);
+        }
+        return count;
+    }
+
+    @Override
+    public CompletableFuture<Long> countSubjectsByGroupAsync(String name) {
+        return supply(DatastoreLane.BULK, () -> countSubjectsByGroup(name));
+    }
+
+    @Override
+    public Map<String, Long> countSubjectsPerGroup() {
+        Map<String, Long> countMap = new HashMap<>();
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = connection.prepareStatement(format(
+                    "SELECT group_name, COUNT(*) FROM %s GROUP BY group_name",
+                    DatastoreSchema.SUBJECTS
+            ));
+            ResultSet set = statement.executeQuery();
+            while (!set.isClosed() && set.next()) {
+                countMap.put(set.getString(1), set.getLong(2));
+            }
+            set.close();
+            statement.close();
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, "Unable to count subjects per group!", error);
+        }
+        return countMap;
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> countSubjectsPerGroupAsync() {
+        return supply(DatastoreLane.BULK, this::countSubjectsPerGroup);
+    }
+
+    @Override
+    public boolean hasSubjectWithPermission(String node) {
+        checkNotNull(node);
+        boolean found = false;
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = connection.prepareStatement(format(
+                    "SELECT 1 FROM %s WHERE node=? LIMIT 1",
+                    DatastoreSchema.SUBJECT_PERMISSIONS
+            ));
+            statement.setString(1, node);
+            ResultSet set = statement.executeQuery();
+            found = set.next();
+            set.close();
+            statement.close();
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to check for subjects with permission '%s'!", node), error);
+        }
+        return found;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> hasSubjectWithPermissionAsync(String node) {
+        return supply(DatastoreLane.BULK, () -> hasSubjectWithPermission(node));
+    }
+
+    @Override
+    public int reassignSubjects(String from, String to) {
+        checkNotNull(from);
+        checkNotNull(to);
+        if (from.equals(to)) {
+            return 0;
+        }
+        flushPendingWrites();
+        try {
+            return updateChunksByGroup(from, format(
+                    "UPDATE %s SET group_name=? WHERE %%s",
+                    DatastoreSchema.SUBJECTS
+            ), to, format("Unable to reassign subjects from group '%s' to '%s'!", from, to));
+        } finally {
+            // subjects cached while the chunks were updated may hold either group
+            invalidateSubjectsByGroup(from);
+            invalidateSubjectsByGroup(to);
+            reloadLoginSubjectsByGroup(from);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Integer> reassignSubjectsAsync(String from, String to) {
+        return supply(DatastoreLane.BULK, () -> reassignSubjects(from, to));
+    }
+
+    @Override
+    public int grantPermissionToSubjectsByGroup(String name, String node) {
+        checkNotNull(name);
+        checkNotNull(node);
+        flushPendingWrites();
+        try {
+            return updateChunksByGroup(name, format(
+                    "INSERT IGNORE INTO %s(uniqueId, node) SELECT uniqueId, ? FROM %s WHERE %%s",
+                    DatastoreSchema.SUBJECT_PERMISSIONS,
+                    DatastoreSchema.SUBJECTS
+            ), node, format("Unable to grant '%s' to subjects of group '%s'!", node, name));
+        } finally {
+            invalidateSubjectsByGroup(name);
+            reloadLoginSubjectsByGroup(name);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Integer> grantPermissionToSubjectsByGroupAsync(String name, String node) {
+        return supply(DatastoreLane.BULK, () -> grantPermissionToSubjectsByGroup(name, node));
+    }
+
+    @Override
+    public WriteBehindQueue.Stats getWriteBehindStats() {
+        return writeBehind != null ? writeBehind.getStats() : WriteBehindQueue.Stats.EMPTY;
+    }
+
+    @Override
+    public CacheStats getSubjectCacheStats() {
+        return subjectCache != null ? subjectCache.stats() : CacheStats.empty();
+    }
+
+    @Override
+    public Map<DatastoreLane, DatastoreExecutor.Stats> getExecutorStats() {
+        Map<DatastoreLane, DatastoreExecutor.Stats> statsMap = new EnumMap<>(DatastoreLane.class);
+        executorMap.forEach((lane, executor) -> statsMap.put(lane, executor.getStats()));
+        return statsMap;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (dataSource.isClosed()) {
+            throw new RuntimeException("Connection is already closed");
+        }
+        if (loginBatcher != null) {
+            loginBatcher.flush();
+        }
+        if (writeBehind != null && !writeBehind.close()) {
+            logger.severe(format("Unable to store %s pending subject writes!", writeBehind.size()));
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        for (DatastoreExecutor executor : executorMap.values()) {
+            if (!executor.shutdown(10, TimeUnit.SECONDS)) {
+                logger.warning("Datastore tasks didn't finish in time, closing anyway!");
+            }
+        }
+        saveGroupSnapshot();
+        dataSource.close();
+    }
+
+    private Optional<DatastoreGroup> loadGroup(String name) {
+        DatastoreGroup cached = snapshot.get().getGroup(name);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        // fetch the group with all of its uncached ancestors, so it can be resolved at once
+        Map<String, DatastoreGroup> fetched = new HashMap<>();
+        Deque<String> queue = new ArrayDeque<>(singletonList(name));
+        while (!queue.isEmpty()) {
+            String next = queue.poll();
+            if (fetched.containsKey(next) || snapshot.get().getGroup(next) != null) {
+                continue;
+            }
+            DatastoreGroup group = selectGroup(next);
+            if (group == null) {
+                if (next.equals(name)) {
+                    return Optional.empty();
+                }
+                continue;
+            }
+            fetched.put(next, group);
+            queue.addAll(group.getParentSet());
+        }
+        if (fetched.isEmpty()) {
+            return Optional.ofNullable(snapshot.get().getGroup(name));
+        }
+        return Optional.ofNullable(publish(fetched.values(), emptyList()).getGroup(name));
+    }
+
+    private DatastoreGroup selectGroup(String name) {
+        try (Connection connection = getConnection()) {
+            return selectGroups(connection, name).get(name);
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to get group with name='%s'!", name), error);
+            return null;
+        }
+    }
+
+    private Map<String, DatastoreGroup> selectGroups(Connection connection, String name) throws SQLException {
+        // all groups if no name is given
+        Map<String, DatastoreGroup> groupMap = new HashMap<>();
+        PreparedStatement statement = connection.prepareStatement(format(
+                "SELECT name, default_group, display_name, prefix, suffix, color_char, tab_order FROM %s%s",
+                DatastoreSchema.GROUPS,
+                name != null ? " WHERE name=?" : ""
+        ));
+        if (name != null) {
+            statement.setString(1, name);
+        }
+        ResultSet set = statement.executeQuery();
+        while (!set.isClosed() && set.next()) {
+            DatastoreGroup group = new DatastoreGroup();
+            group.readFrom(set);
+            groupMap.putIfAbsent(group.getName(), group);
+        }
+        set.close();
+        statement.close();
+        if (groupMap.isEmpty()) {
+            return groupMap;
+        }
+        selectGroupRows(connection, DatastoreSchema.GROUP_PARENTS, "parent", name, groupMap,
+                (group, parent) -> group.getParentSet().add(parent));
+        selectGroupRows(connection, DatastoreSchema.GROUP_PERMISSIONS, "node", name, groupMap,
+                (group, node) -> group.getPermissionSet().add(node));
+        groupMap.values().forEach(DatastoreGroup::markPersisted);
+        return groupMap;
+    }
+
+    private void selectGroupRows(Connection connection, String table, String column, String name,
+                                 Map<String, DatastoreGroup> groupMap,
+                                 BiConsumer<DatastoreGroup, String> consumer) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(format(
+                "SELECT group_name, %s FROM %s%s",
+                column,
+                table,
+                name != null ? " WHERE group_name=?" : ""
+        ));
+        if (name != null) {
+            statement.setString(1, name);
+        }
+        ResultSet set = statement.executeQuery();
+        while (!set.isClosed() && set.next()) {
+            DatastoreGroup group = groupMap.get(set.getString(1));
+            if (group != null) {
+                consumer.accept(group, set.getString(2));
+            }
+        }
+        set.close();
+        statement.close();
+    }
+
+    private Optional<DatastoreSubject> loadSubject(UUID uniqueId) throws Exception {
+        DatastoreSubject pending = pendingSubject(uniqueId);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
+        // concurrent logins of the same player share one query
+        return subjectFlight.execute(uniqueId, () -> selectSubject(uniqueId));
+    }
+
+    private Optional<DatastoreSubject> selectSubject(UUID uniqueId) throws SQLException {
+        DatastoreSubject subject = null;
+        try (Connection connection = getConnection()) {
+            PreparedStatement statement = connection.prepareStatement(selectSubjectsWhere("s.uniqueId=?"));
+            statement.setBytes(1, UniqueIds.toBytes(uniqueId));
+            ResultSet set = statement.executeQuery();
+            List<DatastoreSubject> subjectList = readSubjects(set);
+            if (!subjectList.isEmpty()) {
+                subject = subjectList.get(0);
+            }
+            set.close();
+            statement.close();
+        }
+        return Optional.ofNullable(finalizeSubject(subject));
+    }
+
+    private Map<UUID, Optional<DatastoreSubject>> selectSubjects(Iterable<? extends UUID> uniqueIds)
+            throws SQLException {
+        Set<UUID> requested = new LinkedHashSet<>();
+        uniqueIds.forEach(requested::add);
+        Map<UUID, Optional<DatastoreSubject>> subjectMap = new HashMap<>();
+        try (Connection connection = getConnection()) {
+            for (List<UUID> chunk : Iterables.partition(requested, BULK_CHUNK_SIZE)) {
+                PreparedStatement statement = connection.prepareStatement(selectSubjectsWhere(format(
+                        "s.uniqueId IN (%s)",
+                        String.join(", ", nCopies(chunk.size(), "?"))
+                )));
+                for (int index = 0; index < chunk.size(); index++) {
+                    statement.setBytes(index + 1, UniqueIds.toBytes(chunk.get(index)));
+                }
+                ResultSet set = statement.executeQuery();
+                for (DatastoreSubject subject : readSubjects(set)) {
+                    subjectMap.put(subject.getUniqueId(), Optional.of(finalizeSubject(subject)));
+                }
+                set.close();
+                statement.close();
+            }
+        }
+        requested.forEach(uniqueId -> {
+            DatastoreSubject pending = pendingSubject(uniqueId);
+            subjectMap.put(uniqueId, pending != null
+                    ? Optional.of(pending)
+                    : subjectMap.getOrDefault(uniqueId, Optional.empty()));
+        });
+        return subjectMap;
+    }
+
+    private Optional<DatastoreSubject> lookupSubject(UUID uniqueId) throws Exception {
+        if (subjectCache != null) {
+            return subjectCache.get(uniqueId);
+        }
+        return loadSubject(uniqueId);
+    }
+
+    private CompletableFuture<Optional<DatastoreSubject>> loadLoginSubject(UUID uniqueId) {
+        if (subjectCache != null) {
+            Optional<DatastoreSubject> cached = subjectCache.getIfPresent(uniqueId);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(trackLoginSubject(cached));
+            }
+        }
+        // the batched future is shared by all lookups of the same player, a caller
+        // cancelling its own future (e.g. on a deadline) must not cancel the others
+        return loginBatcher.load(uniqueId).thenApply(this::trackLoginSubject);
+    }
+
+    private Optional<DatastoreSubject> trackLoginSubject(Optional<DatastoreSubject> subject) {
+        subject.ifPresent(present -> loginSubjects.put(present.getUniqueId(), present));
+        return subject;
+    }
+
+    private void writeBehind(DatastoreSubject subject, boolean insert) {
+        // the state is captured now, changes made later on are stored by a later write
+        writeBehind.enqueue(subject.getUniqueId(), new PendingWrite(subject, subject.snapshot(), insert));
+        // reads are served the pending state until it has been flushed
+        if (subjectCache != null) {
+            subjectCache.put(subject.getUniqueId(), Optional.of(subject));
+        }
+    }
+
+    private DatastoreSubject pendingSubject(UUID uniqueId) {
+        PendingWrite pending = writeBehind != null ? writeBehind.get(uniqueId) : null;
+        return pending != null ? pending.subject : null;
+    }
+
+    private void flushPendingWrite(UUID uniqueId) {
+        // single node writes must not be overwritten by an older pending write
+        if (writeBehind != null && writeBehind.get(uniqueId) != null) {
+            writeBehind.flushNow();
+        }
+    }
+
+    private void flushPendingWrites() {
+        // bulk writes must not be overwritten by older pending writes either
+        if (writeBehind != null && writeBehind.size() > 0) {
+            writeBehind.flushNow();
+        }
+    }
+
+    private void flushSubjects(List<PendingWrite> batch) throws SQLException {
+        try {
+            transaction(connection -> {
+                // inserts become upserts, so retrying a partly stored batch can't fail on duplicates
+                PreparedStatement upsert = connection.prepareStatement(format(
+                        "INSERT INTO %s(uniqueId, group_name, permissions) VALUES (?, ?, '') " +
+                                "ON DUPLICATE KEY UPDATE group_name=VALUES(group_name)",
+                        DatastoreSchema.SUBJECTS
+                ));
+                PreparedStatement update = connection.prepareStatement(format(
+                        "UPDATE %s SET group_name=? WHERE uniqueId=?",
+                        DatastoreSchema.SUBJECTS
+                ));
+                PreparedStatement clear = connection.prepareStatement(format(
+                        "DELETE FROM %s WHERE uniqueId=?",
+                        DatastoreSchema.SUBJECT_PERMISSIONS
+                ));
+                PreparedStatement revoke = connection.prepareStatement(format(
+                        "DELETE FROM %s WHERE uniqueId=? AND node=?",
+                        DatastoreSchema.SUBJECT_PERMISSIONS
+                ));
+                PreparedStatement grant = connection.prepareStatement(format(
+                        "INSERT IGNORE INTO %s(uniqueId, node) VALUES (?, ?)",
+                        DatastoreSchema.SUBJECT_PERMISSIONS
+                ));
+                for (PendingWrite write : batch) {
+                    DatastoreSubject subject = write.subject;
+                    DatastoreSubject.Snapshot written = write.written;
+                    byte[] uniqueId = UniqueIds.toBytes(subject.getUniqueId());
+                    boolean rewrite = write.insert || !subject.isPersisted();
+                    if (write.insert) {
+                        upsert.setBytes(1, uniqueId);
+                        upsert.setString(2, written.getGroupName());
+                        upsert.addBatch();
+                    } else if (!subject.getChangedColumnMap(written).isEmpty()) {
+                        update.setString(1, written.getGroupName());
+                        update.setBytes(2, uniqueId);
+                        update.addBatch();
+                    }
+                    if (rewrite) {
+                        clear.setBytes(1, uniqueId);
+                        clear.addBatch();
+                    }
+                    SetDelta delta = subject.getPermissionDelta(written);
+                    for (String node : rewrite ? written.getPermissionSet() : delta.getAddedSet()) {
+                        if (node.length() > DatastoreSchema.NODE_LENGTH) {
+                            // a single bad node must not keep the whole batch from being stored
+                            logger.warning(format("Skipped storing '%s' of player with UUID='%s', it's longer " +
+                                    "than %s characters!", node, subject.getUniqueId(), DatastoreSchema.NODE_LENGTH));
+                            continue;
+                        }
+                        grant.setBytes(1, uniqueId);
+                        grant.setString(2, node);
+                        grant.addBatch();
+                    }
+                    for (String node : rewrite ? Collections.<String>emptySet() : delta.getRemovedSet()) {
+                        revoke.setBytes(1, uniqueId);
+                        revoke.setString(2, node);
+                        revoke.addBatch();
+                    }
+                }
+                for (PreparedStatement statement : asList(upsert, update, clear, revoke, grant)) {
+                    statement.executeBatch();
+                    statement.close();
+                }
+            });
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to flush %s pending subject writes!", batch.size()), error);
+            throw error;
+        }
+        batch.forEach(write -> write.subject.markPersisted(write.written));
+    }
+
+    private void invalidateSubject(UUID uniqueId) {
+        if (subjectCache != null && uniqueId != null) {
+            subjectCache.invalidate(uniqueId);
+        }
+    }
+
+    private void invalidateSubjectsByGroup(String name) {
+        if (subjectCache == null) {
+            return;
+        }
+        List<UUID> affected = new ArrayList<>();
+        subjectCache.asMap().forEach((uniqueId, subject) -> {
+            if (subject.isPresent() && name.equals(subject.get().getGroupName())) {
+                affected.add(uniqueId);
+            }
+        });
+        subjectCache.invalidateAll(affected);
+    }
+
+    private void reloadLoginSubjectsByGroup(String name) {
+        // players keep their subjects, so they're updated in place instead of being replaced
+        Map<UUID, DatastoreSubject> affected = new HashMap<>();
+        loginSubjects.asMap().forEach((uniqueId, subject) -> {
+            if (name.equals(subject.getGroupName())) {
+                affected.put(uniqueId, subject);
+            }
+        });
+        if (affected.isEmpty()) {
+            return;
+        }
+        try {
+            selectSubjects(affected.keySet()).forEach((uniqueId, stored) -> stored.ifPresent(source -> {
+                DatastoreSubject subject = affected.get(uniqueId);
+                if (source != subject) {
+                    subject.updateFrom(source);
+                }
+            }));
+        } catch (SQLException error) {
+            logger.log(Level.WARNING, format("Unable to reload %s online subjects of group '%s'!",
+                    affected.size(), name), error);
+        }
+    }
+
+    /*
+     * Runs the statement once per chunk of the group's subjects, its single
+     * parameter is bound to the value and %s is replaced by the chunk's condition.
+     */
+    private int updateChunksByGroup(String name, String sql, String value, String failure) {
+        int changed = 0;
+        byte[] after = null;
+        try (Connection connection = getConnection()) {
+            byte[] last;
+            while ((last = selectChunkEnd(connection, name, after)) != null) {
+                // every chunk is committed on its own, so locks are only held for one chunk
+                PreparedStatement statement = connection.prepareStatement(format(sql, after != null
+                        ? "group_name=? AND uniqueId>? AND uniqueId<=?"
+                        : "group_name=? AND uniqueId<=?"));
+                statement.setString(1, value);
+                statement.setString(2, name);
+                if (after != null) {
+                    statement.setBytes(3, after);
+                }
+                statement.setBytes(after != null ? 4 : 3, last);
+                changed += statement.executeUpdate();
+                statement.close();
+                after = last;
+            }
+        } catch (SQLException error) {
+            // the chunks updated so far are committed, so the caller has to know about them
+            throw new PartialUpdateException(format("%s %s subjects have been changed before.", failure, changed),
+                    error, changed);
+        }
+        return changed;
+    }
+
+    private byte[] selectChunkEnd(Connection connection, String name, byte[] after) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(format(
+                "SELECT MAX(uniqueId) FROM (SELECT uniqueId FROM %s WHERE group_name=?%s ORDER BY uniqueId LIMIT ?) c",
+                DatastoreSchema.SUBJECTS,
+                after != null ? " AND uniqueId>?" : ""
+        ));
+        statement.setString(1, name);
+        if (after != null) {
+            statement.setBytes(2, after);
+        }
+        statement.setInt(after != null ? 3 : 2, BULK_CHUNK_SIZE);
+        ResultSet set = statement.executeQuery();
+        byte[] last = set.next() ? set.getBytes(1) : null;
+        set.close();
+        statement.close();
+        return last;
+    }
+
+    private synchronized GroupSnapshot publish(Collection<DatastoreGroup> updated, Collection<String> removed) {
+        GroupSnapshot current = snapshot.get();
+        Map<String, DatastoreGroup> next = new HashMap<>(current.getGroupMap());
+        List<String> changed = new ArrayList<>(removed);
+        removed.forEach(next::remove);
+        for (DatastoreGroup group : updated) {
+            // the cached instance stays canonical, since online subjects are holding it
+            DatastoreGroup cached = next.putIfAbsent(group.getName(), group);
+            if (cached == null) {
+                group.setMaximumCheckCacheSize(checkCacheSize);
+            } else if (cached != group) {
+                cached.updateFrom(group);
+            }
+            changed.add(group.getName());
+        }
+        // only the changed groups and their descendants, all other groups keep their check caches
+        PermissionCalculator.resolve(next, changed).applyTo(next);
+        GroupSnapshot published = GroupSnapshot.of(next, current.getDefaultGroup());
+        snapshot.set(published);
+        queueGroupSnapshotSave();
+        return published;
+    }
+
+    private void loadGroupSnapshot() {
+        if (groupSnapshotFile == null || !groupSnapshotFile.isFile()) {
+            return;
+        }
+        try {
+            Map<String, DatastoreGroup> loaded = GroupSnapshotFile.read(groupSnapshotFile);
+            if (loaded.isEmpty()) {
+                return;
+            }
+            loaded.values().forEach(DatastoreGroup::markPersisted);
+            GroupSnapshot published = replaceSnapshot(loaded);
+            logger.info(format("Loaded %s group%s from the local snapshot!",
+                    published.size(),
+                    published.size() > 1 ? "s" : ""
+            ));
+        } catch (IOException error) {
+            logger.log(Level.WARNING, "Unable to load the local group snapshot, waiting for the database!", error);
+        }
+    }
+
+    private void queueGroupSnapshotSave() {
+        // changes published meanwhile are saved together, the file is written by the refresh lane
+        if (groupSnapshotFile == null || !groupSnapshotQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> {
+                try {
+                    executorMap.get(DatastoreLane.REFRESH).execute(this::saveGroupSnapshot);
+                } catch (RejectedExecutionException error) {
+                    // saved once the datastore is closed
+                }
+            }, GROUP_SNAPSHOT_SAVE_DELAY, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException error) {
+            groupSnapshotQueued.set(false);
+        }
+    }
+
+    private void saveGroupSnapshot() {
+        if (!groupSnapshotQueued.compareAndSet(true, false)) {
+            return;
+        }
+        byte[] payload;
+        // encoded under the monitor of publish, so groups aren't updated while they are read
+        synchronized (this) {
+            payload = DatastoreCodec.encodeGroups(snapshot.get().getGroupMap().values());
+        }
+        synchronized (groupSnapshotLock) {
+            try {
+                GroupSnapshotFile.write(groupSnapshotFile, payload);
+            } catch (IOException error) {
+                logger.log(Level.WARNING, "Unable to save the local group snapshot!", error);
+            }
+        }
+    }
+
+    private synchronized GroupSnapshot replaceSnapshot(Map<String, DatastoreGroup> fetched) {
+        PermissionCalculator.Resolution resolution = PermissionCalculator.resolve(fetched);
+        resolution.getCycleList().forEach(cycle -> logger.warning(format(
+                "Groups %s inherit from each other in a cycle, they will share all of their permissions!",
+                cycle
+        )));
+        GroupSnapshot current = snapshot.get();
+        Map<String, DatastoreGroup> next = new HashMap<>();
+        fetched.forEach((name, group) -> next.put(name, current.getGroupMap().getOrDefault(name, group)));
+        next.values().forEach(group -> group.setMaximumCheckCacheSize(checkCacheSize));
+        // effective sets first, so reused instances never answer checks with a half updated set
+        resolution.applyTo(next);
+        next.forEach((name, group) -> {
+            DatastoreGroup source = fetched.get(name);
+            if (group != source) {
+                group.updateFrom(source);
+            }
+        });
+        GroupSnapshot published = GroupSnapshot.of(next, current.getDefaultGroup());
+        snapshot.set(published);
+        return published;
+    }
+
+    private String selectSubjectsWhere(String condition) {
+        // one row per permission node, subjects without any nodes have a single row with a null node
+        return format("SELECT s.uniqueId, s.group_name, p.node FROM %s s LEFT JOIN %s p ON p.uniqueId=s.uniqueId " +
+                        "WHERE %s",
+                DatastoreSchema.SUBJECTS,
+                DatastoreSchema.SUBJECT_PERMISSIONS,
+                condition
+        );
+    }
+
+    private String selectSubjectPage(boolean after) {
+        // the limit applies to subjects rather than joined rows, (group_name, uniqueId) is covered by the group index
+        return format("SELECT s.uniqueId, s.group_name, p.node FROM (" +
+                        "SELECT uniqueId, group_name FROM %s WHERE group_name=?%s ORDER BY uniqueId LIMIT ?" +
+                        ") s LEFT JOIN %s p ON p.uniqueId=s.uniqueId ORDER BY s.uniqueId",
+                DatastoreSchema.SUBJECTS,
+                after ? " AND uniqueId>?" : "",
+                DatastoreSchema.SUBJECT_PERMISSIONS
+        );
+    }
+
+    private List<DatastoreSubject> readSubjects(ResultSet set) throws SQLException {
+        Map<UUID, DatastoreSubject> subjectMap = new LinkedHashMap<>();
+        Map<UUID, Set<String>> nodeMap = new HashMap<>();
+        while (!set.isClosed() && set.next()) {
+            UUID uniqueId = UniqueIds.fromBytes(set.getBytes("uniqueId"));
+            if (!subjectMap.containsKey(uniqueId)) {
+                DatastoreSubject subject = new DatastoreSubject();
+                subject.readFrom(set);
+                subjectMap.put(uniqueId, subject);
+            }
+            String node = set.getString("node");
+            if (node != null) {
+                nodeMap.computeIfAbsent(uniqueId, key -> new HashSet<>()).add(node);
+            }
+        }
+        nodeMap.forEach((uniqueId, nodeSet) -> subjectMap.get(uniqueId).updatePermissionSet(nodeSet));
+        subjectMap.values().forEach(DatastoreSubject::markPersisted);
+        return new ArrayList<>(subjectMap.values());
+    }
+
+    private void updateCachedPermissionSet(String name, Consumer<Set<String>> change) {
+        DatastoreGroup cached = snapshot.get().getGroup(name);
+        if (cached == null) {
+            return;
+        }
+        DatastoreGroup updated = new DatastoreGroup(name);
+        updated.updateFrom(cached);
+        change.accept(updated.getPermissionSet());
+        updated.markPersisted();
+        publish(singletonList(updated), emptyList());
+    }
+
+    private void transaction(Transaction transaction) throws SQLException {
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                transaction.run(connection);
+                connection.commit();
+            } catch (SQLException error) {
+                connection.rollback();
+                throw error;
+            }
+        }
+    }
+
+    private void insertRows(Connection connection, String table, String ownerColumn, String valueColumn,
+                            Object owner, Collection<String> values) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(format(
+                "INSERT IGNORE INTO %s(%s, %s) VALUES (?, ?)",
+                table,
+                ownerColumn,
+                valueColumn
+        ));
+        boolean batched = false;
+        for (String value : values) {
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            if (value.length() > DatastoreSchema.NODE_LENGTH) {
+                statement.close();
+                throw new SQLDataException(format("'%s' is longer than %s characters", value,
+                        DatastoreSchema.NODE_LENGTH));
+            }
+            statement.setObject(1, owner);
+            statement.setString(2, value);
+            statement.addBatch();
+            batched = true;
+        }
+        if (batched) {
+            statement.executeBatch();
+        }
+        statement.close();
+    }
+
+    private void deleteRows(Connection connection, String table, String ownerColumn, Object owner)
+            throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(format(
+                "DELETE FROM %s WHERE %s=?",
+                table,
+                ownerColumn
+        ));
+        statement.setObject(1, owner);
+        statement.executeUpdate();
+        statement.close();
+    }
+
+    private void deleteRows(Connection connection, String table, String ownerColumn, String valueColumn,
+                            Object owner, Collection<String> values) throws SQLException {
+        if (values.isEmpty()) {
+            return;
+        }
+        PreparedStatement statement = connection.prepareStatement(format(
+                "DELETE FROM %s WHERE %s=? AND %s=?",
+                table,
+                ownerColumn,
+                valueColumn
+        ));
+        for (String value : values) {
+            statement.setObject(1, owner);
+            statement.setString(2, value);
+            statement.addBatch();
+        }
+        statement.executeBatch();
+        statement.close();
+    }
+
+    private void updateColumns(Connection connection, String table, Map<String, Object> columnMap,
+                               String keyColumn, Object key) throws SQLException {
+        if (columnMap.isEmpty()) {
+            return;
+        }
+        PreparedStatement statement = connection.prepareStatement(format(
+                "UPDATE %s SET %s WHERE %s=?",
+                table,
+                columnMap.keySet().stream().map(column -> column + "=?").collect(Collectors.joining(", ")),
+                keyColumn
+        ));
+        int index = 1;
+        for (Object value : columnMap.values()) {
+            statement.setObject(index++, value);
+        }
+        statement.setObject(index, key);
+        statement.executeUpdate();
+        statement.close();
     }
 
     private DatastoreSubject finalizeSubject(DatastoreSubject subject) {
@@ -532,66 +1724,130 @@ public class OrbitDatastore implements Datastore {
             if (group.isPresent()) {
                 subject.setGroup(group.get());
             } else {
-                subject.setGroup(defaultGroup.get());
+                subject.setGroup(snapshot.get().getDefaultGroup());
             }
-            subject.updatePermissionSet(subject.getCombinedPermissionSet());
         }
         return subject;
     }
 
-    private void submitTask(final Runnable task) {
-        checkNotNull(task, "Database task (Runnable) can't be null");
-        Thread current = Thread.currentThread();
-        if (threadSet.contains(current) || !primaryThread.get().equals(current)) {
-            task.run();
-        } else {
-            queue.execute(task);
+    private void createLane(DatastoreLane lane, int configured, int derived, DatastoreSettings settings,
+                            Thread primary, Semaphore sharedPermits) {
+        executorMap.put(lane, new DatastoreExecutor(
+                format("Datastore %s", lane.name().charAt(0) + lane.name().substring(1).toLowerCase()),
+                configured > 0 ? configured : Math.max(1, derived),
+                settings.getExecutorQueueSize(),
+                settings.getExecutorRejectionPolicy(),
+                primary,
+                sharedPermits != null,
+                sharedPermits
+        ));
+    }
+
+    private void submitTask(final DatastoreLane lane, final Runnable task, final DataCallback<Boolean> callback) {
+        checkNotNull(callback);
+        try {
+            executorMap.get(lane).execute(task);
+        } catch (RejectedExecutionException error) {
+            callback.complete(false, error);
         }
     }
 
-    private <T> void fulfill(final DataCallback<T> callback, final Callable<T> result) {
-        submitTask(() -> {
-            try {
-                checkNotNull(callback);
-                checkNotNull(result);
-                callback.complete(result.call(), null);
-            } catch (Exception error) {
-                callback.complete(null, error);
-                error.printStackTrace();
-            }
-        });
+    private <T> CompletableFuture<T> supply(final DatastoreLane lane, final Callable<T> result) {
+        checkNotNull(result);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executorMap.get(lane).execute(() -> {
+                if (future.isDone()) {
+                    // cancelled or timed out before it has been started
+                    return;
+                }
+                try {
+                    future.complete(result.call());
+                } catch (Exception | Error error) {
+                    future.completeExceptionally(error);
+                }
+            });
+        } catch (RejectedExecutionException error) {
+            future.completeExceptionally(error);
+        }
+        return future;
+    }
+
+    private <T> void fulfill(final DataCallback<T> callback, final DatastoreLane lane, final Callable<T> result) {
+        checkNotNull(callback);
+        checkNotNull(result);
+        try {
+            executorMap.get(lane).execute(() -> {
+                try {
+                    callback.complete(result.call(), null);
+                } catch (Exception error) {
+                    callback.complete(null, error);
+                    error.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException error) {
+            callback.complete(null, error);
+        }
     }
 
-    private final List<String> TABLE_SCHEMA = new LinkedList<>(asList(
-
-            format("CREATE TABLE IF NOT EXISTS `%s`(" +
-                    "`name` VARCHAR(16) NOT NULL, " +
-                    "`parents` TEXT NOT NULL, " +
-                    "`default_group` BOOLEAN NOT NULL, " +
-                    "`display_name` VARCHAR(16) NOT NULL, " +
-                    "`prefix` VARCHAR(16) NOT NULL, " +
-                    "`suffix` VARCHAR(16) NOT NULL, " +
-                    "`color_char` CHAR(1) NOT NULL, " +
-                    "`tab_order` SMALLINT NOT NULL, " +
-                    "`permissions` TEXT NOT NULL, " +
-                    "PRIMARY KEY(`name`), UNIQUE(`tab_order`)" +
-                    ") DEFAULT CHARSET=utf8;", table(DatastoreGroup.class)),
-
-            format("CREATE TABLE IF NOT EXISTS `%s`(" +
-                    "`uniqueId` VARCHAR(36) NOT NULL, " +
-                    "`group_name` VARCHAR(16) NOT NULL, " +
-                    "`permissions` TEXT NOT NULL, " +
-                    "PRIMARY KEY(`uniqueId`), INDEX(`group_name`)" +
-                    ") DEFAULT CHARSET=utf8;", table(DatastoreSubject.class))
-    ));
+    // maximum amount of keys bound to a single IN (...) clause
+    private static final int BULK_CHUNK_SIZE = 500;
+    // milliseconds a group snapshot save waits for further changes
+    private static final long GROUP_SNAPSHOT_SAVE_DELAY = 1000;
 
     private static volatile Datastore datastore = null;
 
     public static Datastore createDatastore(Logger logger, DatastoreCredentials credentials, Thread primary,
                                             int poolSize) throws Exception {
+        return createDatastore(logger, credentials, primary, poolSize, new DatastoreSettings());
+    }
+
+    public static Datastore createDatastore(Logger logger, DatastoreCredentials credentials, Thread primary,
+                                            int poolSize, DatastoreSettings settings) throws Exception {
+        return createDatastore(logger, new MySqlBackend(credentials), primary, poolSize, settings);
+    }
+
+    public static Datastore createDatastore(Logger logger, DatastoreBackend backend, Thread primary,
+                                            int poolSize, DatastoreSettings settings) throws Exception {
         if (datastore == null) {
-            datastore = new OrbitDatastore(logger, credentials, primary, poolSize);
+            datastore = new OrbitDatastore(logger, backend, primary, poolSize, settings);
         }
         return datastore;
     }
+
+    /**
+     * Creates a new datastore, unlike {@link #createDatastore(Logger, DatastoreBackend, Thread, int,
+     * DatastoreSettings)} which always returns the first datastore created.
+     *
+     * @param logger   the logger to report to
+     * @param backend  the backend to store data in
+     * @param primary  the primary thread, which never runs datastore tasks itself
+     * @param poolSize the amount of asynchronous datastore threads
+     * @param settings the settings of the datastore
+     * @return the new datastore
+     * @throws Exception if the datastore couldn't be created
+     */
+    public static Datastore newDatastore(Logger logger, DatastoreBackend backend, Thread primary,
+                                         int poolSize, DatastoreSettings settings) throws Exception {
+        return new OrbitDatastore(logger, backend, primary, poolSize, settings);
+    }
+
+    @RequiredArgsConstructor
+    private static final class PendingWrite {
+
+        private final DatastoreSubject subject;
+        private final DatastoreSubject.Snapshot written;
+        private final boolean insert;
+
+        private static PendingWrite merge(PendingWrite previous, PendingWrite next) {
+            // the latest state is written, as an insert if any of the writes was one
+            return new PendingWrite(next.subject, next.written, previous.insert || next.insert);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Transaction {
+
+        void run(Connection connection) throws SQLException;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import com.google.common.collect.*;
+import lombok.*;
+
+import java.util.*;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Entries added to and removed from a set since it has been persisted.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class SetDelta {
+
+    public static final SetDelta EMPTY = new SetDelta(ImmutableSet.of(), ImmutableSet.of());
+
+    private final ImmutableSet<String> addedSet;
+    private final ImmutableSet<String> removedSet;
+
+    public boolean isEmpty() {
+        return addedSet.isEmpty() && removedSet.isEmpty();
+    }
+
+    public static SetDelta between(Set<String> before, Set<String> after) {
+        checkNotNull(before, "Previous set can't be null");
+        checkNotNull(after, "Current set can't be null");
+        if (before.equals(after)) {
+            return EMPTY;
+        }
+        return new SetDelta(
+                ImmutableSet.copyOf(Sets.difference(after, before)),
+                ImmutableSet.copyOf(Sets.difference(before, after))
+        );
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Coalesces concurrent loads of the same key into a single in-flight load.
+ * <p>
+ * The first caller for a key runs the loader, every caller arriving while
+ * it's still running waits for and shares its result (or error). Nothing is
+ * cached, a call after the load has completed starts a new one.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of loaded values
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flightMap = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+
+    V execute(K key, Callable<V> loader) throws Exception {
+        checkNotNull(key, "Key can't be null");
+        checkNotNull(loader, "Loader can't be null");
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flightMap.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            return await(existing);
+        }
+        try {
+            V value = loader.call();
+            flight.complete(value);
+            return value;
+        } catch (Exception | Error error) {
+            flight.completeExceptionally(error);
+            throw error;
+        } finally {
+            flightMap.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return the amount of calls which shared the load of another call
+     */
+    long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    private V await(CompletableFuture<V> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw error;
+        } catch (ExecutionException error) {
+            Throwable cause = error.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw cause instanceof Exception ? (Exception) cause : error;
+        }
+    }
+}
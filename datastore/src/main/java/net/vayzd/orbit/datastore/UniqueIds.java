@@ -0,0 +1,68 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import lombok.*;
+
+import java.util.*;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Converts unique ids from and to their {@code BINARY(16)} representation,
+ * the most significant bits first.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class UniqueIds {
+
+    public static byte[] toBytes(UUID uniqueId) {
+        checkNotNull(uniqueId, "Unique id can't be null");
+        byte[] bytes = new byte[16];
+        write(bytes, 0, uniqueId.getMostSignificantBits());
+        write(bytes, 8, uniqueId.getLeastSignificantBits());
+        return bytes;
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        checkNotNull(bytes, "Bytes can't be null");
+        checkArgument(bytes.length == 16, "Unique id must be 16 bytes long");
+        return new UUID(read(bytes, 0), read(bytes, 8));
+    }
+
+    private static void write(byte[] bytes, int offset, long value) {
+        for (int index = 7; index >= 0; index--) {
+            bytes[offset + index] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long read(byte[] bytes, int offset) {
+        long value = 0;
+        for (int index = 0; index < 8; index++) {
+            value = (value << 8) | (bytes[offset + index] & 0xFF);
+        }
+        return value;
+    }
+}
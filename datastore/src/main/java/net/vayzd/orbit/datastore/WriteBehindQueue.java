@@ -0,0 +1,286 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import lombok.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+import java.util.logging.*;
+
+import static com.google.common.base.Preconditions.*;
+import static java.lang.String.*;
+
+/**
+ * Queues writes to be flushed in batches later on, repeated writes of the
+ * same key are coalesced into one.
+ * <p>
+ * Pending writes are flushed once per interval, or as soon as a full batch
+ * is pending. Flushes never overlap, so writes of the same key are stored in
+ * order. A failed batch is queued again, unless it failed repeatedly.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of pending writes
+ */
+public final class WriteBehindQueue<K, V> {
+
+    // consecutive failures after which a batch is dropped
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final Flusher<V> flusher;
+    private final BinaryOperator<V> merger;
+    private final Executor executor;
+    private final Logger logger;
+    private final int batchSize;
+    private final ScheduledFuture<?> interval;
+    private final Object lock = new Object();
+    private final Map<K, V> pending = new LinkedHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private int failedAttempts = 0;
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder failedFlushCount = new LongAdder();
+    private final LongAdder flushTime = new LongAdder();
+    private final AtomicLong maxFlushTime = new AtomicLong(0);
+
+    WriteBehindQueue(Flusher<V> flusher, BinaryOperator<V> merger, Executor executor,
+                     ScheduledExecutorService scheduler, Logger logger, long interval, int batchSize) {
+        checkArgument(interval > 0, "Flush interval must be greater than 0");
+        checkArgument(batchSize > 0, "Batch size must be greater than 0");
+        this.flusher = checkNotNull(flusher, "Flusher can't be null");
+        this.merger = checkNotNull(merger, "Merger can't be null");
+        this.executor = checkNotNull(executor, "Executor can't be null");
+        this.logger = checkNotNull(logger, "Logger can't be null");
+        this.batchSize = batchSize;
+        this.interval = checkNotNull(scheduler, "Scheduler can't be null")
+                .scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a write, merged with the write of the same key which is still pending.
+     *
+     * @param key   the key of the written entry
+     * @param value the write
+     */
+    void enqueue(K key, V value) {
+        checkNotNull(key, "Key can't be null");
+        checkNotNull(value, "Value can't be null");
+        int size;
+        synchronized (lock) {
+            V previous = pending.get(key);
+            if (previous != null) {
+                coalesced.increment();
+                pending.put(key, merger.apply(previous, value));
+            } else {
+                pending.put(key, value);
+            }
+            size = pending.size();
+        }
+        queued.increment();
+        if (size >= batchSize) {
+            flush();
+        }
+    }
+
+    V get(K key) {
+        synchronized (lock) {
+            return pending.get(key);
+        }
+    }
+
+    /**
+     * Removes the pending write of the given key, after a running flush has finished.
+     *
+     * @param key the key of the removed entry
+     * @return the removed write, or {@code null} if none was pending
+     */
+    V remove(K key) {
+        // a running flush may hold the write of this key, or queue it again if it fails
+        flushLock.lock();
+        try {
+            synchronized (lock) {
+                return pending.remove(key);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes all pending writes on the executor.
+     */
+    void flush() {
+        if (!flushQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                flushQueued.set(false);
+                flushNow();
+            });
+        } catch (RejectedExecutionException error) {
+            // retried with the next interval
+            flushQueued.set(false);
+        }
+    }
+
+    /**
+     * Flushes all pending writes on the current thread.
+     *
+     * @return {@code true} if no writes are pending anymore
+     */
+    boolean flushNow() {
+        while (true) {
+            Boolean result = flushBatch();
+            if (result == null) {
+                return true;
+            }
+            if (!result) {
+                return size() == 0;
+            }
+        }
+    }
+
+    /**
+     * Stops flushing periodically and flushes all pending writes on the current thread.
+     *
+     * @return {@code true} if no writes are pending anymore
+     */
+    boolean close() {
+        interval.cancel(false);
+        boolean empty = flushNow();
+        if (!empty) {
+            // one more attempt, the writes are lost otherwise
+            empty = flushNow();
+        }
+        return empty;
+    }
+
+    int size() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public Stats getStats() {
+        long flushes = flushCount.sum();
+        return new Stats(
+                size(),
+                queued.sum(),
+                coalesced.sum(),
+                flushed.sum(),
+                dropped.sum(),
+                flushes,
+                failedFlushCount.sum(),
+                flushes > 0 ? flushTime.sum() / flushes : 0,
+                maxFlushTime.get()
+        );
+    }
+
+    // null if nothing was pending, otherwise whether the batch has been flushed
+    private Boolean flushBatch() {
+        flushLock.lock();
+        try {
+            Map<K, V> batch = new LinkedHashMap<>();
+            synchronized (lock) {
+                Iterator<Map.Entry<K, V>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    Map.Entry<K, V> entry = iterator.next();
+                    batch.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+            if (batch.isEmpty()) {
+                return null;
+            }
+            long start = System.nanoTime();
+            try {
+                flusher.flush(new ArrayList<>(batch.values()));
+            } catch (Exception error) {
+                failedFlushCount.increment();
+                if (++failedAttempts >= MAX_ATTEMPTS) {
+                    failedAttempts = 0;
+                    dropped.add(batch.size());
+                    logger.log(Level.SEVERE, format("Dropped %s pending writes after %s failed attempts!",
+                            batch.size(), MAX_ATTEMPTS), error);
+                } else {
+                    requeue(batch);
+                }
+                return false;
+            }
+            long elapsed = System.nanoTime() - start;
+            failedAttempts = 0;
+            flushed.add(batch.size());
+            flushCount.increment();
+            flushTime.add(elapsed);
+            maxFlushTime.accumulateAndGet(elapsed, Math::max);
+            return true;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void requeue(Map<K, V> batch) {
+        synchronized (lock) {
+            // writes queued meanwhile are newer, they're merged onto the failed ones
+            Map<K, V> next = new LinkedHashMap<>(batch);
+            pending.forEach((key, value) -> next.merge(key, value, merger));
+            pending.clear();
+            pending.putAll(next);
+        }
+    }
+
+    @FunctionalInterface
+    interface Flusher<V> {
+
+        void flush(List<V> batch) throws Exception;
+    }
+
+    /**
+     * Point-in-time metrics of a {@link WriteBehindQueue}, times are in nanoseconds.
+     */
+    @Value
+    public static class Stats {
+
+        public static final Stats EMPTY = new Stats(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        int queueDepth;
+        long queuedCount;
+        long coalescedCount;
+        long flushedCount;
+        long droppedCount;
+        long flushCount;
+        long failedFlushCount;
+        long averageFlushTime;
+        long maxFlushTime;
+    }
+}
@@ -24,6 +24,8 @@
  */
 package net.vayzd.orbit.datastore.group;
 
+import com.github.benmanes.caffeine.cache.stats.*;
+import com.google.common.collect.*;
 import lombok.*;
 import net.vayzd.orbit.datastore.*;
 
@@ -35,10 +37,12 @@ import static com.google.common.base.Preconditions.*;
 @DatastoreTable(name = "groups")
 @Getter
 @Setter
-@ToString
+@ToString(exclude = {"inheritedSet", "persisted"})
 @SuppressWarnings("ResultOfMethodCallIgnored")
 public class DatastoreGroup implements DatastoreEntry {
 
+    public static final long DEFAULT_CHECK_CACHE_SIZE = 4096;
+
     private final PermissionMatcher matcher;
     private String name = null;
     private TreeSet<String> parentSet = new TreeSet<>();
@@ -52,9 +56,15 @@ public class DatastoreGroup implements DatastoreEntry {
     private int tabOrder = 0;
     @Setter(AccessLevel.PRIVATE)
     private TreeSet<String> permissionSet = new TreeSet<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile ImmutableSet<String> inheritedSet = ImmutableSet.of();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile Snapshot persisted = null;
 
     public DatastoreGroup() {
-        this.matcher = new PermissionMatcher(permissionSet, true);
+        this.matcher = new PermissionMatcher(DEFAULT_CHECK_CACHE_SIZE);
     }
 
     public DatastoreGroup(@NonNull String name) {
@@ -63,11 +73,38 @@ public class DatastoreGroup implements DatastoreEntry {
         this.name = name;
     }
 
+    /**
+     * Replaces the group's own permission nodes and recompiles its effective
+     * permission set together with the nodes inherited from its parents.
+     *
+     * @param updatedSet the group's own permission nodes
+     */
     public void updatePermissionSet(@NonNull Set<String> updatedSet) {
         checkNotNull(updatedSet, "Updated permission set can't be null");
         permissionSet.clear();
         permissionSet.addAll(updatedSet);
-        matcher.updatePermissionSet(updatedSet);
+        compile();
+    }
+
+    /**
+     * Replaces the nodes this group inherits from its parents, as resolved
+     * by the {@link PermissionCalculator}.
+     *
+     * @param inheritedSet the nodes inherited from all parents
+     */
+    public void updateInheritedPermissionSet(@NonNull Set<String> inheritedSet) {
+        checkNotNull(inheritedSet, "Inherited permission set can't be null");
+        this.inheritedSet = ImmutableSet.copyOf(inheritedSet);
+        compile();
+    }
+
+    void updateInheritedPermissionSet(ImmutableSet<String> inheritedSet, ImmutableSet<String> effectiveSet) {
+        this.inheritedSet = inheritedSet;
+        matcher.updatePermissionSet(effectiveSet);
+    }
+
+    public ImmutableSet<String> getEffectivePermissionSet() {
+        return matcher.getTrie().getPermissionSet();
     }
 
     public boolean hasPermission(@NonNull String permission) {
@@ -75,16 +112,162 @@ public class DatastoreGroup implements DatastoreEntry {
         return matcher.hasPermission(permission);
     }
 
+    /**
+     * Copies all persisted attributes of the given group into this one, so
+     * references to this instance (e.g. of online subjects) stay valid.
+     * What has been persisted of the given group counts as persisted here too.
+     *
+     * @param source the group to copy the attributes from
+     */
+    public void updateFrom(@NonNull DatastoreGroup source) {
+        checkNotNull(source, "Source group can't be null");
+        setParentSet(new TreeSet<>(source.getParentSet()));
+        setDefaultGroup(source.isDefaultGroup());
+        setDisplayName(source.getDisplayName());
+        setPrefix(source.getPrefix());
+        setSuffix(source.getSuffix());
+        setColorChar(source.getColorChar());
+        setTabOrder(source.getTabOrder());
+        updatePermissionSet(source.getPermissionSet());
+        persisted = source.persisted;
+    }
+
+    /**
+     * @return the current attributes, which stay unchanged by later modifications of this group
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(defaultGroup, displayName, prefix, suffix, colorChar, tabOrder,
+                ImmutableSet.copyOf(parentSet), ImmutableSet.copyOf(permissionSet));
+    }
+
+    /**
+     * Remembers the current attributes as persisted, later writes only
+     * store what changed since.
+     */
+    public void markPersisted() {
+        markPersisted(snapshot());
+    }
+
+    /**
+     * Remembers the given attributes as persisted, they have to be the ones
+     * which have been written, so changes made meanwhile are stored next time.
+     *
+     * @param written the attributes which have been written
+     */
+    public void markPersisted(@NonNull Snapshot written) {
+        checkNotNull(written, "Written snapshot can't be null");
+        persisted = written;
+    }
+
+    public boolean isPersisted() {
+        return persisted != null;
+    }
+
+    /**
+     * @return the columns changed since this group has been persisted, mapped to their new values
+     */
+    public Map<String, Object> getChangedColumnMap() {
+        return getChangedColumnMap(snapshot());
+    }
+
+    public Map<String, Object> getChangedColumnMap(@NonNull Snapshot current) {
+        checkNotNull(current, "Current snapshot can't be null");
+        Snapshot before = persisted;
+        Map<String, Object> columnMap = new LinkedHashMap<>();
+        if (before == null || before.defaultGroup != current.defaultGroup) {
+            columnMap.put("default_group", current.defaultGroup);
+        }
+        if (before == null || !Objects.equals(before.displayName, current.displayName)) {
+            columnMap.put("display_name", current.displayName);
+        }
+        if (before == null || !Objects.equals(before.prefix, current.prefix)) {
+            columnMap.put("prefix", current.prefix);
+        }
+        if (before == null || !Objects.equals(before.suffix, current.suffix)) {
+            columnMap.put("suffix", current.suffix);
+        }
+        if (before == null || before.colorChar != current.colorChar) {
+            columnMap.put("color_char", String.valueOf(current.colorChar));
+        }
+        if (before == null || before.tabOrder != current.tabOrder) {
+            columnMap.put("tab_order", current.tabOrder);
+        }
+        return columnMap;
+    }
+
+    public SetDelta getParentDelta() {
+        return getParentDelta(snapshot());
+    }
+
+    public SetDelta getParentDelta(@NonNull Snapshot current) {
+        checkNotNull(current, "Current snapshot can't be null");
+        Snapshot before = persisted;
+        return SetDelta.between(before != null ? before.parentSet : ImmutableSet.of(), current.parentSet);
+    }
+
+    public SetDelta getPermissionDelta() {
+        return getPermissionDelta(snapshot());
+    }
+
+    public SetDelta getPermissionDelta(@NonNull Snapshot current) {
+        checkNotNull(current, "Current snapshot can't be null");
+        Snapshot before = persisted;
+        return SetDelta.between(before != null ? before.permissionSet : ImmutableSet.of(), current.permissionSet);
+    }
+
+    public CacheStats getCheckCacheStats() {
+        return matcher.getCacheStats();
+    }
+
+    public long getCheckCacheSize() {
+        return matcher.getCacheSize();
+    }
+
+    /**
+     * Sets the maximum amount of cached permission check results of this
+     * group, results cached so far are dropped if it changes.
+     * <p>
+     * Groups cached by a datastore use the size of its settings, a size of 0
+     * disables the cache.
+     *
+     * @param size the maximum amount of cached check results
+     */
+    public void setMaximumCheckCacheSize(long size) {
+        matcher.setCacheSize(size);
+    }
+
     @Override
     public void readFrom(ResultSet set) throws SQLException {
-        setName(set.getString(1));
-        setParentSet(getSetFromString(set, 2));
-        setDefaultGroup(set.getBoolean(3));
-        setDisplayName(set.getString(4));
-        setPrefix(set.getString(5));
-        setSuffix(set.getString(6));
-        setColorChar(set.getString(7).charAt(0));
-        setTabOrder(set.getInt(8));
-        setPermissionSet(getSetFromString(set, 9));
+        // parents and permission nodes are stored in rows of their own
+        setName(set.getString("name"));
+        setDefaultGroup(set.getBoolean("default_group"));
+        setDisplayName(set.getString("display_name"));
+        setPrefix(set.getString("prefix"));
+        setSuffix(set.getString("suffix"));
+        setColorChar(set.getString("color_char").charAt(0));
+        setTabOrder(set.getInt("tab_order"));
+    }
+
+    /**
+     * Attributes of a group at one point in time.
+     */
+    @Value
+    public static class Snapshot {
+
+        boolean defaultGroup;
+        String displayName;
+        String prefix;
+        String suffix;
+        char colorChar;
+        int tabOrder;
+        ImmutableSet<String> parentSet;
+        ImmutableSet<String> permissionSet;
+    }
+
+    private void compile() {
+        matcher.updatePermissionSet(PermissionCalculator.union(Arrays.asList(
+                inheritedSet,
+                PermissionCalculator.filter(name, permissionSet)
+        )));
     }
 }
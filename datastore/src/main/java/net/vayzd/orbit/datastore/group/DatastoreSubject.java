@@ -24,6 +24,7 @@
  */
 package net.vayzd.orbit.datastore.group;
 
+import com.google.common.collect.*;
 import lombok.*;
 import net.vayzd.orbit.datastore.*;
 
@@ -35,44 +36,162 @@ import static com.google.common.base.Preconditions.*;
 @DatastoreTable(name = "subjects")
 @Getter
 @Setter
-@ToString
+@ToString(exclude = {"decision", "persisted"})
 @SuppressWarnings("ResultOfMethodCallIgnored")
 public class DatastoreSubject implements DatastoreEntry {
 
-    private final PermissionMatcher matcher;
     private UUID uniqueId = null;
     private String groupName = null;
     private DatastoreGroup group = null;
-    @Setter(AccessLevel.PRIVATE)
-    private TreeSet<String> permissionSet = new TreeSet<>();
-
-    public DatastoreSubject() {
-        this.matcher = new PermissionMatcher(permissionSet, false);
-    }
+    // replaced as a whole, so permission checks never observe a half updated set
+    @Setter(AccessLevel.NONE)
+    private volatile ImmutableSortedSet<String> permissionSet = ImmutableSortedSet.of();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile Decision decision = null;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile Snapshot persisted = null;
 
     public void updatePermissionSet(@NonNull Set<String> updatedSet) {
         checkNotNull(updatedSet, "Updated permission set can't be null");
-        permissionSet.clear();
-        permissionSet.addAll(updatedSet);
-        matcher.updatePermissionSet(updatedSet);
+        permissionSet = ImmutableSortedSet.copyOf(updatedSet);
     }
 
     public boolean hasPermission(@NonNull String permission) {
         checkNotNull(permission, "Permission to check for can't be null");
-        return (group != null && group.hasPermission(permission)) || matcher.hasPermission(permission);
+        ImmutableSortedSet<String> personalSet = permissionSet;
+        if (personalSet.isEmpty()) {
+            return group != null && group.hasPermission(permission);
+        }
+        return decide(personalSet).trie.matches(permission);
     }
 
     public Set<String> getCombinedPermissionSet() {
-        Set<String> combined = new TreeSet<>();
-        combined.addAll(permissionSet);
-        combined.addAll(group != null ? group.getPermissionSet() : new TreeSet<>());
-        return Collections.unmodifiableSet(combined);
+        ImmutableSortedSet<String> personalSet = permissionSet;
+        if (personalSet.isEmpty()) {
+            return groupTrie().getPermissionSet();
+        }
+        return decide(personalSet).trie.getPermissionSet();
+    }
+
+    /**
+     * Copies all persisted attributes of the given subject into this one, so
+     * references to this instance (e.g. of online players) stay valid.
+     * What has been persisted of the given subject counts as persisted here too.
+     *
+     * @param source the subject to copy the attributes from
+     */
+    public void updateFrom(@NonNull DatastoreSubject source) {
+        checkNotNull(source, "Source subject can't be null");
+        setGroupName(source.getGroupName());
+        setGroup(source.getGroup());
+        permissionSet = source.permissionSet;
+        persisted = source.persisted;
+    }
+
+    /**
+     * @return the name of the group this subject is assigned to
+     */
+    public String getEffectiveGroupName() {
+        return group != null ? group.getName() : groupName;
+    }
+
+    /**
+     * @return the current attributes, which stay unchanged by later modifications of this subject
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(getEffectiveGroupName(), permissionSet);
+    }
+
+    /**
+     * Remembers the current attributes as persisted, later writes only
+     * store what changed since.
+     */
+    public void markPersisted() {
+        markPersisted(snapshot());
+    }
+
+    /**
+     * Remembers the given attributes as persisted, they have to be the ones
+     * which have been written, so changes made meanwhile are stored next time.
+     *
+     * @param written the attributes which have been written
+     */
+    public void markPersisted(@NonNull Snapshot written) {
+        checkNotNull(written, "Written snapshot can't be null");
+        persisted = written;
+    }
+
+    public boolean isPersisted() {
+        return persisted != null;
+    }
+
+    /**
+     * @return the columns changed since this subject has been persisted, mapped to their new values
+     */
+    public Map<String, Object> getChangedColumnMap() {
+        return getChangedColumnMap(snapshot());
+    }
+
+    public Map<String, Object> getChangedColumnMap(@NonNull Snapshot current) {
+        checkNotNull(current, "Current snapshot can't be null");
+        Snapshot before = persisted;
+        if (before != null && Objects.equals(before.groupName, current.groupName)) {
+            return Collections.emptyMap();
+        }
+        return Collections.singletonMap("group_name", current.groupName);
+    }
+
+    public SetDelta getPermissionDelta() {
+        return getPermissionDelta(snapshot());
+    }
+
+    public SetDelta getPermissionDelta(@NonNull Snapshot current) {
+        checkNotNull(current, "Current snapshot can't be null");
+        Snapshot before = persisted;
+        return SetDelta.between(before != null ? before.permissionSet : ImmutableSet.of(), current.permissionSet);
     }
 
     @Override
     public void readFrom(ResultSet set) throws SQLException {
-        setUniqueId(UUID.fromString(set.getString(1)));
-        setGroupName(set.getString(2));
-        setPermissionSet(getSetFromString(set, 3));
+        // permission nodes are stored in rows of their own
+        setUniqueId(UniqueIds.fromBytes(set.getBytes("uniqueId")));
+        setGroupName(set.getString("group_name"));
+    }
+
+    private PermissionTrie groupTrie() {
+        return group != null ? group.getMatcher().getTrie() : PermissionTrie.EMPTY;
+    }
+
+    private Decision decide(ImmutableSortedSet<String> personalSet) {
+        // merged structure of group and personal nodes, rebuilt once either side changed
+        PermissionTrie groupTrie = groupTrie();
+        Decision current = decision;
+        if (current == null || current.groupTrie != groupTrie || current.personalSet != personalSet) {
+            Set<String> combined = new HashSet<>(groupTrie.getPermissionSet());
+            combined.addAll(personalSet);
+            current = new Decision(groupTrie, personalSet, PermissionTrie.compile(combined));
+            decision = current;
+        }
+        return current;
+    }
+
+    /**
+     * Attributes of a subject at one point in time.
+     */
+    @Value
+    public static class Snapshot {
+
+        String groupName;
+        ImmutableSet<String> permissionSet;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Decision {
+
+        private final PermissionTrie groupTrie;
+        private final ImmutableSortedSet<String> personalSet;
+        private final PermissionTrie trie;
     }
 }
@@ -30,6 +30,8 @@ import net.vayzd.orbit.datastore.*;
 
 import java.util.*;
 
+import static com.google.common.base.Preconditions.*;
+
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 @Getter(AccessLevel.PRIVATE)
 public class PermissionCalculator {
@@ -43,59 +45,272 @@ public class PermissionCalculator {
         return new PermissionCalculator(group, datastore);
     }
 
+    /**
+     * Resolves the whole inheritance graph of the given groups at once.
+     * <p>
+     * Groups are visited in topological order (parents first), so every
+     * effective set is built from the already resolved sets of its parents.
+     * Groups inheriting from each other in a cycle are reported and share
+     * the nodes of the whole cycle. Parents missing from the map are ignored.
+     *
+     * @param groupMap the groups to resolve, keyed by name
+     * @return the inherited and effective permission sets of every group
+     */
+    public static Resolution resolve(Map<String, DatastoreGroup> groupMap) {
+        checkNotNull(groupMap, "Group map can't be null");
+        return new Resolver(groupMap, groupMap).resolve();
+    }
+
+    /**
+     * Resolves only the given changed groups and everything inheriting from
+     * them, directly or indirectly.
+     * <p>
+     * Parents outside of that part of the graph keep their current effective
+     * set, which is reused as is. The returned resolution only contains the
+     * recomputed groups, so applying it leaves all other groups untouched.
+     *
+     * @param groupMap    all known groups, keyed by name
+     * @param changedList the names of the groups which have been changed, added or removed
+     * @return the inherited and effective permission sets of the recomputed groups
+     */
+    public static Resolution resolve(Map<String, DatastoreGroup> groupMap, Collection<String> changedList) {
+        checkNotNull(groupMap, "Group map can't be null");
+        checkNotNull(changedList, "Changed group list can't be null");
+        Map<String, Set<String>> childMap = new HashMap<>();
+        groupMap.forEach((name, group) -> {
+            for (String parent : group.getParentSet()) {
+                childMap.computeIfAbsent(parent, key -> new HashSet<>()).add(name);
+            }
+        });
+        Map<String, DatastoreGroup> affectedMap = new HashMap<>();
+        Deque<String> queue = new ArrayDeque<>(changedList);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            DatastoreGroup group = groupMap.get(name);
+            if (group != null && affectedMap.put(name, group) != null) {
+                continue;
+            }
+            queue.addAll(childMap.getOrDefault(name, Collections.emptySet()));
+        }
+        return new Resolver(affectedMap, groupMap).resolve();
+    }
+
     public ImmutableSet<String> computePermissionSet() {
-        TreeSet<String> permissionSet = new TreeSet<>();
-        for (String ancestor : calculateGroupTree()) {
-            for (String permission : getGroupFor(ancestor).getPermissionSet()) {
-                if (permission.isEmpty() || permission.contains(" ") || permission.equalsIgnoreCase(ancestor)
-                        || permissionSet.contains(permission)) {
-                    continue;
+        return resolveAncestry().getEffectiveMap().get(group.getName());
+    }
+
+    public ImmutableSet<String> computeInheritedPermissionSet() {
+        return resolveAncestry().getInheritedMap().get(group.getName());
+    }
+
+    private Resolution resolveAncestry() {
+        checkNotNull(group.getName(), "Group name can't be null");
+        Map<String, DatastoreGroup> ancestry = new HashMap<>();
+        Deque<DatastoreGroup> queue = new ArrayDeque<>();
+        ancestry.put(group.getName(), group);
+        queue.add(group);
+        while (!queue.isEmpty()) {
+            for (String parent : queue.poll().getParentSet()) {
+                if (!ancestry.containsKey(parent)) {
+                    datastore.getGroup(parent).ifPresent(found -> {
+                        ancestry.put(parent, found);
+                        queue.add(found);
+                    });
                 }
-                permissionSet.add(permission);
             }
         }
-        return squash(permissionSet);
+        return resolve(ancestry);
     }
 
-    private ImmutableSet<String> calculateGroupTree() {
-        List<String> tree = new ArrayList<>();
-        tree.add(group.getName());
-        for (String next : group.getParentSet()) {
-            if (next.equals(group.getName())) {
+    static ImmutableSet<String> filter(String name, Collection<String> permissions) {
+        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        for (String permission : permissions) {
+            if (permission == null || permission.isEmpty() || permission.contains(" ")
+                    || permission.equalsIgnoreCase(name)) {
                 continue;
             }
-            for (String trunk : calculateBackwardGroupTree(next)) {
-                tree.add(0, trunk);
+            builder.add(permission);
+        }
+        return builder.build();
+    }
+
+    static ImmutableSet<String> union(Collection<ImmutableSet<String>> sets) {
+        ImmutableSet<String> largest = ImmutableSet.of();
+        for (ImmutableSet<String> set : sets) {
+            if (set.size() > largest.size()) {
+                largest = set;
+            }
+        }
+        boolean covered = true;
+        for (ImmutableSet<String> set : sets) {
+            if (set != largest && !largest.containsAll(set)) {
+                covered = false;
+                break;
             }
         }
-        return squash(tree);
+        if (covered) {
+            // e.g. a single parent and no own nodes, share the instance
+            return largest;
+        }
+        Set<String> merged = new HashSet<>(largest);
+        sets.forEach(merged::addAll);
+        return ImmutableSet.copyOf(merged);
     }
 
-    private ImmutableSet<String> calculateBackwardGroupTree(String group) {
-        TreeSet<String> tree = new TreeSet<>();
-        tree.add(group);
-        for (String next : getGroupFor(group).getParentSet()) {
-            try {
-                if (next.equals(group)) {
-                    continue;
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static final class Resolution {
+
+        private final ImmutableMap<String, ImmutableSet<String>> inheritedMap;
+        private final ImmutableMap<String, ImmutableSet<String>> effectiveMap;
+        private final ImmutableList<ImmutableList<String>> cycleList;
+
+        public void applyTo(Map<String, DatastoreGroup> groupMap) {
+            groupMap.forEach((name, group) -> {
+                ImmutableSet<String> inherited = inheritedMap.get(name);
+                if (group != null && inherited != null) {
+                    group.updateInheritedPermissionSet(inherited, effectiveMap.get(name));
+                }
+            });
+        }
+    }
+
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class Resolver {
+
+        private final Map<String, DatastoreGroup> groupMap;
+        private final Map<String, DatastoreGroup> resolvedMap;
+        private final Map<String, Integer> indexMap = new HashMap<>();
+        private final Map<String, Integer> lowMap = new HashMap<>();
+        private final Deque<String> stack = new ArrayDeque<>();
+        private final Set<String> stackSet = new HashSet<>();
+        private final Map<String, ImmutableSet<String>> inheritedMap = new HashMap<>();
+        private final Map<String, ImmutableSet<String>> effectiveMap = new HashMap<>();
+        private final List<ImmutableList<String>> cycleList = new ArrayList<>();
+
+        private Resolution resolve() {
+            for (String name : groupMap.keySet()) {
+                if (!indexMap.containsKey(name)) {
+                    connect(name);
                 }
-                if (getGroupFor(next).getParentSet().contains(group)) {
+            }
+            return new Resolution(
+                    ImmutableMap.copyOf(inheritedMap),
+                    ImmutableMap.copyOf(effectiveMap),
+                    ImmutableList.copyOf(cycleList)
+            );
+        }
+
+        // tarjan's algorithm, components are completed after every component they inherit from;
+        // visits are kept on an explicit stack, so long chains of parents can't overflow the call stack
+        private void connect(String root) {
+            Deque<Visit> visitStack = new ArrayDeque<>();
+            visitStack.push(visit(root));
+            while (!visitStack.isEmpty()) {
+                Visit visit = visitStack.peek();
+                if (visit.parents.hasNext()) {
+                    String parent = visit.parents.next();
+                    if (!groupMap.containsKey(parent)) {
+                        continue;
+                    }
+                    if (!indexMap.containsKey(parent)) {
+                        visitStack.push(visit(parent));
+                    } else if (stackSet.contains(parent)) {
+                        lowMap.put(visit.name, Math.min(lowMap.get(visit.name), indexMap.get(parent)));
+                    }
                     continue;
                 }
-                tree.addAll(new ArrayList<>(calculateBackwardGroupTree(next)));
-            } catch (StackOverflowError error) {
-                return squash(getGroupFor(group).getParentSet());
+                visitStack.pop();
+                if (lowMap.get(visit.name).equals(indexMap.get(visit.name))) {
+                    List<String> component = new ArrayList<>();
+                    String member;
+                    do {
+                        member = stack.pop();
+                        stackSet.remove(member);
+                        component.add(member);
+                    } while (!member.equals(visit.name));
+                    inherit(component);
+                }
+                Visit child = visitStack.peek();
+                if (child != null) {
+                    lowMap.put(child.name, Math.min(lowMap.get(child.name), lowMap.get(visit.name)));
+                }
             }
         }
-        return squash(tree);
-    }
 
-    private DatastoreGroup getGroupFor(String name) {
-        Optional<DatastoreGroup> group = datastore.getGroup(name);
-        return group.orElseGet(this::getGroup);
+        private Visit visit(String name) {
+            int index = indexMap.size();
+            indexMap.put(name, index);
+            lowMap.put(name, index);
+            stack.push(name);
+            stackSet.add(name);
+            return new Visit(name, parentsOf(name).iterator());
+        }
+
+        private void inherit(List<String> component) {
+            List<ImmutableSet<String>> external = new ArrayList<>();
+            for (String member : component) {
+                for (String parent : parentsOf(member)) {
+                    if (!component.contains(parent)) {
+                        ImmutableSet<String> effective = effectiveMap.get(parent);
+                        external.add(effective != null
+                                ? effective
+                                : resolvedMap.get(parent).getEffectivePermissionSet()
+                        );
+                    }
+                }
+            }
+            ImmutableSet<String> inherited = union(external);
+            if (component.size() == 1) {
+                String name = component.get(0);
+                inheritedMap.put(name, inherited);
+                effectiveMap.put(name, union(Arrays.asList(inherited, ownOf(name))));
+                return;
+            }
+            Collections.sort(component);
+            cycleList.add(ImmutableList.copyOf(component));
+            Map<String, ImmutableSet<String>> ownMap = new HashMap<>();
+            component.forEach(member -> ownMap.put(member, ownOf(member)));
+            ImmutableSet<String> effective = union(ImmutableList.<ImmutableSet<String>>builder()
+                    .add(inherited)
+                    .addAll(ownMap.values())
+                    .build());
+            for (String member : component) {
+                List<ImmutableSet<String>> others = new ArrayList<>();
+                others.add(inherited);
+                ownMap.forEach((other, own) -> {
+                    if (!other.equals(member)) {
+                        others.add(own);
+                    }
+                });
+                inheritedMap.put(member, union(others));
+                effectiveMap.put(member, effective);
+            }
+        }
+
+        private List<String> parentsOf(String name) {
+            DatastoreGroup group = groupMap.get(name);
+            if (group == null || group.getParentSet() == null) {
+                return Collections.emptyList();
+            }
+            List<String> parentList = new ArrayList<>(group.getParentSet().size());
+            for (String parent : group.getParentSet()) {
+                if (!parent.equals(name) && (groupMap.containsKey(parent) || resolvedMap.containsKey(parent))) {
+                    parentList.add(parent);
+                }
+            }
+            return parentList;
+        }
+
+        private ImmutableSet<String> ownOf(String name) {
+            return filter(name, groupMap.get(name).getPermissionSet());
+        }
     }
 
-    private <T> ImmutableSet<T> squash(Collection<T> list) {
-        return ImmutableSet.copyOf(list);
+    @RequiredArgsConstructor
+    private static final class Visit {
+
+        private final String name;
+        private final Iterator<String> parents;
     }
-}
\ No newline at end of file
+}
@@ -24,78 +24,85 @@
  */
 package net.vayzd.orbit.datastore.group;
 
-import lombok.*;
+import com.github.benmanes.caffeine.cache.*;
+import com.github.benmanes.caffeine.cache.stats.*;
 
 import java.util.*;
-import java.util.concurrent.*;
-import java.util.regex.*;
 
-import static java.util.regex.Pattern.*;
+import static com.google.common.base.Preconditions.*;
 
 final class PermissionMatcher {
 
-    private ConcurrentMap<String, Boolean> cache = null;
-    private Set<Pattern> patternSet;
-    @Getter
-    private final TreeSet<String> permissionSet;
+    private volatile long cacheSize = 0;
+    private volatile Cache<String, Boolean> cache = null;
+    private volatile PermissionTrie trie = PermissionTrie.EMPTY;
 
-    PermissionMatcher(TreeSet<String> permissionSet, boolean caching) {
-        this.patternSet = new HashSet<>();
-        this.permissionSet = permissionSet;
-        deliver();
-        if (caching) {
-            cache = new ConcurrentHashMap<>();
+    PermissionMatcher(long cacheSize) {
+        setCacheSize(cacheSize);
+    }
+
+    synchronized void setCacheSize(long size) {
+        checkArgument(size >= 0, "Cache size must be greater than or equal to 0");
+        if (size == cacheSize) {
+            return;
+        }
+        cacheSize = size;
+        if (size == 0) {
+            cache = null;
+            return;
         }
+        // size based eviction in caffeine is W-TinyLFU, so rarely checked dynamic nodes can't flush hot ones
+        cache = Caffeine.newBuilder()
+                .maximumSize(size)
+                .recordStats()
+                .build();
     }
 
     void updatePermissionSet(Set<String> updatedSet) {
-        permissionSet.clear();
-        permissionSet.addAll(updatedSet);
-        deliver();
+        if (trie.getPermissionSet().equals(updatedSet)) {
+            return;
+        }
+        trie = PermissionTrie.compile(updatedSet);
         purgeCache();
     }
 
     boolean hasPermission(String permission) {
-        if (cache != null && cache.containsKey(permission)) {
-            return cache.get(permission);
+        Cache<String, Boolean> cache = this.cache;
+        if (cache == null) {
+            return trie.matches(permission);
         }
-        for (Pattern pattern : patternSet) {
-            if (pattern.matcher(permission).matches()) {
-                if (cache != null) {
-                    cache.put(permission, true);
-                }
-                return true;
-            }
+        Boolean cached = cache.getIfPresent(permission);
+        if (cached != null) {
+            return cached;
         }
-        if (cache != null) {
-            cache.put(permission, false);
+        PermissionTrie current = trie;
+        boolean result = current.matches(permission);
+        cache.put(permission, result);
+        if (current != trie) {
+            // permission set has been updated concurrently, don't keep the stale result
+            cache.invalidate(permission);
         }
-        return false;
+        return result;
     }
 
-    private void purgeCache() {
-        if (cache != null) {
-            cache.clear();
-        }
+    PermissionTrie getTrie() {
+        return trie;
     }
 
-    private void deliver() {
-        patternSet.clear();
-        permissionSet.forEach(permission -> patternSet.add(create(permission)));
+    CacheStats getCacheStats() {
+        Cache<String, Boolean> cache = this.cache;
+        return cache != null ? cache.stats() : CacheStats.empty();
     }
 
-    private Pattern create(String permission) {
-        try {
-            return compile(prepare(permission), Pattern.CASE_INSENSITIVE);
-        } catch (PatternSyntaxException ex) {
-            return compile(quote(permission), Pattern.CASE_INSENSITIVE);
-        }
+    long getCacheSize() {
+        Cache<String, Boolean> cache = this.cache;
+        return cache != null ? cache.estimatedSize() : 0;
     }
 
-    private String prepare(String permission) {
-        if (permission.startsWith("$")) {
-            return permission.substring(1);
+    private void purgeCache() {
+        Cache<String, Boolean> cache = this.cache;
+        if (cache != null) {
+            cache.invalidateAll();
         }
-        return permission.replace(".", "\\.").replace("*", "(.*)");
     }
 }
\ No newline at end of file
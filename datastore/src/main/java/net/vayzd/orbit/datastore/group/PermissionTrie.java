@@ -0,0 +1,167 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore.group;
+
+import com.google.common.collect.*;
+import lombok.*;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Compiled form of a permission set.
+ * <p>
+ * Nodes are split into their '.'-separated segments and stored in a trie,
+ * where a segment consisting of a single '*' is a wildcard edge consuming
+ * one or more segments of the checked permission. Segments which only
+ * contain a '*' somewhere (e.g. 'build*') are kept as glob tails on the
+ * trie node they start at. Only '$'-prefixed nodes are matched by regex.
+ */
+final class PermissionTrie {
+
+    static final PermissionTrie EMPTY = compile(Collections.emptySet());
+
+    private final Node root = new Node();
+    private final List<Pattern> patternList = new ArrayList<>();
+    @Getter
+    private final ImmutableSet<String> permissionSet;
+
+    private PermissionTrie(ImmutableSet<String> permissionSet) {
+        this.permissionSet = permissionSet;
+    }
+
+    static PermissionTrie compile(Collection<String> permissions) {
+        PermissionTrie trie = new PermissionTrie(ImmutableSet.copyOf(Iterables.filter(permissions, Objects::nonNull)));
+        trie.permissionSet.forEach(trie::insert);
+        return trie;
+    }
+
+    boolean matches(String permission) {
+        if (matches(root, permission.toLowerCase(Locale.ROOT), 0)) {
+            return true;
+        }
+        for (Pattern pattern : patternList) {
+            if (pattern.matcher(permission).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(String permission) {
+        if (permission.startsWith("$")) {
+            try {
+                patternList.add(Pattern.compile(permission.substring(1), Pattern.CASE_INSENSITIVE));
+            } catch (PatternSyntaxException ex) {
+                patternList.add(Pattern.compile(Pattern.quote(permission), Pattern.CASE_INSENSITIVE));
+            }
+            return;
+        }
+        String lower = permission.toLowerCase(Locale.ROOT);
+        Node node = root;
+        int offset = 0;
+        while (true) {
+            int end = lower.indexOf('.', offset);
+            if (end < 0) {
+                end = lower.length();
+            }
+            String segment = lower.substring(offset, end);
+            if (segment.equals("*")) {
+                if (node.wildcard == null) {
+                    node.wildcard = new Node();
+                }
+                node = node.wildcard;
+            } else if (segment.indexOf('*') >= 0) {
+                node.globList.add(lower.substring(offset));
+                return;
+            } else {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            if (end == lower.length()) {
+                node.terminal = true;
+                return;
+            }
+            offset = end + 1;
+        }
+    }
+
+    private boolean matches(Node node, String permission, int offset) {
+        for (String glob : node.globList) {
+            if (glob(glob, permission, offset)) {
+                return true;
+            }
+        }
+        int end = permission.indexOf('.', offset);
+        if (node.wildcard != null) {
+            if (node.wildcard.terminal) {
+                return true;
+            }
+            // the wildcard consumes at least one segment, try every following segment start
+            for (int next = end; next >= 0; next = permission.indexOf('.', next + 1)) {
+                if (matches(node.wildcard, permission, next + 1)) {
+                    return true;
+                }
+            }
+        }
+        if (node.children.isEmpty()) {
+            return false;
+        }
+        Node child = node.children.get(permission.substring(offset, end < 0 ? permission.length() : end));
+        if (child == null) {
+            return false;
+        }
+        return end < 0 ? child.terminal : matches(child, permission, end + 1);
+    }
+
+    private boolean glob(String glob, String permission, int offset) {
+        int g = 0, p = offset, star = -1, mark = 0;
+        while (p < permission.length()) {
+            if (g < glob.length() && glob.charAt(g) == '*') {
+                star = g++;
+                mark = p;
+            } else if (g < glob.length() && glob.charAt(g) == permission.charAt(p)) {
+                g++;
+                p++;
+            } else if (star >= 0) {
+                g = star + 1;
+                p = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<String> globList = new ArrayList<>(0);
+        private Node wildcard = null;
+        private boolean terminal = false;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import net.vayzd.orbit.datastore.group.*;
+import org.junit.*;
+
+import java.nio.*;
+import java.util.*;
+
+import static java.util.Arrays.*;
+import static net.vayzd.orbit.datastore.DatastoreFixtures.*;
+import static org.junit.Assert.*;
+
+public class DatastoreCodecTest {
+
+    @Test
+    public void groupsSurviveRoundTrip() {
+        DatastoreGroup defaultGroup = newGroup("default", 32767, "chat.*", "-chat.color");
+        defaultGroup.setDefaultGroup(true);
+        DatastoreGroup admin = newGroup("admin", -5, "admin.kick", "chat.*");
+        admin.getParentSet().add("default");
+        admin.setDisplayName("Administr\u00e4tor \uD83D\uDE80");
+        admin.setPrefix(null);
+        admin.setColorChar('c');
+        List<DatastoreGroup> decoded = DatastoreCodec.decodeGroups(DatastoreCodec.encodeGroups(asList(defaultGroup, admin)));
+        assertEquals(2, decoded.size());
+        assertGroupEquals(defaultGroup, decoded.get(0));
+        assertGroupEquals(admin, decoded.get(1));
+    }
+
+    @Test
+    public void subjectsSurviveRoundTrip() {
+        DatastoreSubject subject = newSubject("default", "fly", "build.*");
+        DatastoreSubject withoutGroup = newSubject(null);
+        DatastoreSubject linked = newSubject("ignored", "fly");
+        linked.setGroup(new DatastoreGroup("vip"));
+        List<DatastoreSubject> decoded = DatastoreCodec.decodeSubjects(
+                DatastoreCodec.encodeSubjects(asList(subject, withoutGroup, linked)));
+        assertEquals(3, decoded.size());
+        assertSubjectEquals(subject, decoded.get(0));
+        assertSubjectEquals(withoutGroup, decoded.get(1));
+        assertEquals("vip", decoded.get(2).getGroupName());
+        assertNull(decoded.get(2).getGroup());
+    }
+
+    @Test
+    public void sharedNodesAreStoredOnce() {
+        List<DatastoreSubject> subjectList = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            subjectList.add(newSubject("default", "some.rather.long.permission.node", "another.long.permission.node"));
+        }
+        byte[] bytes = DatastoreCodec.encodeSubjects(subjectList);
+        // 16 bytes unique id, group index, node count and two node indices per subject
+        assertTrue(bytes.length < 100 * 20 + 100);
+        List<DatastoreSubject> decoded = DatastoreCodec.decodeSubjects(bytes);
+        assertSame(decoded.get(0).getPermissionSet().first(), decoded.get(99).getPermissionSet().first());
+    }
+
+    @Test
+    public void setsInAnotherOrderAreDecoded() {
+        DatastoreGroup group = newGroup("default", 1);
+        TreeSet<String> parentSet = new TreeSet<>(Collections.reverseOrder());
+        parentSet.addAll(asList("a", "b", "c"));
+        group.setParentSet(parentSet);
+        assertEquals(parentSet, DatastoreCodec.decodeGroups(DatastoreCodec.encodeGroups(Collections.singletonList(group)))
+                .get(0).getParentSet());
+    }
+
+    @Test
+    public void sortedRunViewsMatchATreeSet() {
+        String[] dictionary = {"a", "b", "c", "d", "e", "f"};
+        SortedSet<String> run = new DatastoreCodec.SortedRun(dictionary, new int[]{0, 2, 3, 5}, 0, 4);
+        TreeSet<String> expected = new TreeSet<>(asList("a", "c", "d", "f"));
+        assertEquals(expected, run);
+        assertEquals(expected.subSet("b", "f"), run.subSet("b", "f"));
+        assertEquals(expected.subSet("c", "d"), run.subSet("c", "d"));
+        assertEquals(expected.headSet("d"), run.headSet("d"));
+        assertEquals(expected.tailSet("d"), run.tailSet("d"));
+        assertEquals(expected.tailSet("g"), run.tailSet("g"));
+        SortedSet<String> view = run.subSet("b", "f").tailSet("d");
+        assertEquals(Collections.singleton("d"), view);
+        assertEquals("d", view.first());
+        assertEquals("d", view.last());
+        assertFalse(view.contains("c"));
+        assertTrue(run.contains("f"));
+        assertFalse(run.contains("b"));
+        assertTrue(run.headSet("a").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sortedRunRangesCantEndBeforeTheyStart() {
+        new DatastoreCodec.SortedRun(new String[]{"a", "b"}, new int[]{0, 1}, 0, 2).subSet("b", "a");
+    }
+
+    @Test
+    public void directBuffersAreDecoded() {
+        List<DatastoreGroup> groupList = Collections.singletonList(newGroup("default", 1, "chat.*"));
+        byte[] bytes = DatastoreCodec.encodeGroups(groupList);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 3).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[3]).put(bytes).flip();
+        buffer.position(3);
+        assertGroupEquals(groupList.get(0), DatastoreCodec.decodeGroups(buffer).get(0));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void emptyCollectionsSurviveRoundTrip() {
+        assertTrue(DatastoreCodec.decodeGroups(DatastoreCodec.encodeGroups(Collections.emptyList())).isEmpty());
+        assertTrue(DatastoreCodec.decodeSubjects(DatastoreCodec.encodeSubjects(Collections.emptyList())).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subjectsAreNotDecodedAsGroups() {
+        DatastoreCodec.decodeGroups(DatastoreCodec.encodeSubjects(Collections.singletonList(newSubject("default"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherVersionsAreRejected() {
+        byte[] bytes = DatastoreCodec.encodeGroups(Collections.singletonList(newGroup("default", 1)));
+        bytes[0] = (byte) (DatastoreCodec.FORMAT_VERSION + 1);
+        DatastoreCodec.decodeGroups(bytes);
+    }
+
+    @Test
+    public void truncatedBytesAreRejected() {
+        byte[] bytes = DatastoreCodec.encodeGroups(asList(newGroup("default", 1, "chat.*"), newGroup("vip", 2, "fly")));
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                DatastoreCodec.decodeGroups(Arrays.copyOf(bytes, length));
+                fail("Decoded groups truncated to " + length + " bytes");
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    private static void assertGroupEquals(DatastoreGroup expected, DatastoreGroup actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.isDefaultGroup(), actual.isDefaultGroup());
+        assertEquals(expected.getDisplayName(), actual.getDisplayName());
+        assertEquals(expected.getPrefix(), actual.getPrefix());
+        assertEquals(expected.getSuffix(), actual.getSuffix());
+        assertEquals(expected.getColorChar(), actual.getColorChar());
+        assertEquals(expected.getTabOrder(), actual.getTabOrder());
+        assertEquals(expected.getParentSet(), actual.getParentSet());
+        assertEquals(expected.getPermissionSet(), actual.getPermissionSet());
+    }
+
+    private static void assertSubjectEquals(DatastoreSubject expected, DatastoreSubject actual) {
+        assertEquals(expected.getUniqueId(), actual.getUniqueId());
+        assertEquals(expected.getGroupName(), actual.getGroupName());
+        assertEquals(expected.getPermissionSet(), actual.getPermissionSet());
+    }
+}
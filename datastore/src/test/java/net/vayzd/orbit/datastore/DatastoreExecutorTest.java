@@ -0,0 +1,67 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import org.junit.*;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class DatastoreExecutorTest {
+
+    private DatastoreExecutor login;
+    private DatastoreExecutor bulk;
+
+    @Before
+    public void setUp() {
+        login = new DatastoreExecutor("Login", 1, 16, DatastoreExecutor.RejectionPolicy.ABORT, new Thread());
+        bulk = new DatastoreExecutor("Bulk", 1, 16, DatastoreExecutor.RejectionPolicy.ABORT, new Thread());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        login.shutdown(5, TimeUnit.SECONDS);
+        bulk.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void nestedTasksOfTheSameExecutorRunInline() throws Exception {
+        CompletableFuture<Boolean> inline = new CompletableFuture<>();
+        login.execute(() -> {
+            Thread outer = Thread.currentThread();
+            login.execute(() -> inline.complete(Thread.currentThread() == outer));
+        });
+        assertTrue(inline.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void tasksOfAnotherExecutorRunOnItsOwnThreads() throws Exception {
+        CompletableFuture<Boolean> owned = new CompletableFuture<>();
+        login.execute(() -> bulk.execute(() -> owned.complete(bulk.isOwnerThread())));
+        assertTrue(owned.get(5, TimeUnit.SECONDS));
+        assertEquals(1, bulk.getStats().getSubmittedCount());
+    }
+}
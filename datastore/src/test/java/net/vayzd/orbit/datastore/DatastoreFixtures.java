@@ -0,0 +1,67 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import net.vayzd.orbit.datastore.group.*;
+
+import java.util.*;
+
+import static java.util.Arrays.*;
+
+/**
+ * Groups and subjects holding every value the datastore requires, meant for
+ * tests and benchmarks.
+ */
+public final class DatastoreFixtures {
+
+    private DatastoreFixtures() {
+    }
+
+    public static DatastoreGroup newGroup(String name, int tabOrder, String... permissions) {
+        return newGroup(name, tabOrder, asList(permissions));
+    }
+
+    public static DatastoreGroup newGroup(String name, int tabOrder, Collection<String> permissions) {
+        DatastoreGroup group = new DatastoreGroup(name);
+        group.setDisplayName(name);
+        group.setPrefix("");
+        group.setSuffix("");
+        group.setTabOrder(tabOrder);
+        group.updatePermissionSet(new HashSet<>(permissions));
+        return group;
+    }
+
+    public static DatastoreSubject newSubject(String groupName, String... permissions) {
+        return newSubject(UUID.randomUUID(), groupName, asList(permissions));
+    }
+
+    public static DatastoreSubject newSubject(UUID uniqueId, String groupName, Collection<String> permissions) {
+        DatastoreSubject subject = new DatastoreSubject();
+        subject.setUniqueId(uniqueId);
+        subject.setGroupName(groupName);
+        subject.updatePermissionSet(new HashSet<>(permissions));
+        return subject;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import net.vayzd.orbit.datastore.group.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import static java.lang.String.*;
+import static net.vayzd.orbit.datastore.DatastoreFixtures.*;
+
+/**
+ * Compares the login lookup throughput of platform and virtual datastore
+ * threads against an embedded H2 database.
+ * <p>
+ * Arguments: {@code [lookups] [latency in milliseconds] [pool size]}, the
+ * latency is added to every statement to emulate a remote database server.
+ * Both modes use the same pool size, virtual threads are only measured when
+ * running on Java 21 or newer.
+ */
+public class LoginLookupBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(LoginLookupBenchmark.class.getName());
+    private static final int SUBJECTS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        print(run(lookups, latency, poolSize, false));
+        if (DatastoreExecutor.isVirtualThreadSupported()) {
+            print(run(lookups, latency, poolSize, true));
+        } else {
+            System.out.println("virtual threads require Java 21 or newer, skipped");
+        }
+    }
+
+    private static Result run(int lookups, long latency, int poolSize, boolean virtual) throws Exception {
+        MemoryBackend backend = new MemoryBackend();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setVirtualThreads(virtual);
+        // every lookup has to reach the database
+        settings.setSubjectCacheSize(0);
+        settings.setExecutorQueueSize(lookups);
+        try (Datastore datastore = OrbitDatastore.newDatastore(LOGGER, backend, Thread.currentThread(), poolSize,
+                settings)) {
+            CompletableFuture<Boolean> connected = new CompletableFuture<>();
+            datastore.connect((result, error) -> connected.complete(error == null));
+            if (!connected.get(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Unable to connect to the memory backend");
+            }
+            List<UUID> uniqueIdList = populate(datastore);
+            CompletableFuture<Boolean> fetched = new CompletableFuture<>();
+            datastore.fetchAndCacheGroups((result, error) -> fetched.complete(result));
+            if (!fetched.get(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Unable to cache the default group");
+            }
+            backend.setLatency(latency, TimeUnit.MILLISECONDS);
+            // warm up both the database and the JIT
+            lookup(datastore, uniqueIdList, lookups / 4);
+            long start = System.nanoTime();
+            lookup(datastore, uniqueIdList, lookups);
+            long elapsed = System.nanoTime() - start;
+            return new Result(datastore.getExecutorStats().get(DatastoreLane.LOGIN), lookups, elapsed);
+        }
+    }
+
+    private static List<UUID> populate(Datastore datastore) {
+        DatastoreGroup group = newGroup("default", 0);
+        group.setDefaultGroup(true);
+        if (!datastore.insertGroup(group)) {
+            throw new IllegalStateException("Unable to insert the default group");
+        }
+        List<UUID> uniqueIdList = new ArrayList<>();
+        for (int i = 0; i < SUBJECTS; i++) {
+            DatastoreSubject subject = newSubject("default", "orbit.example", "orbit.other.*");
+            if (!datastore.insertSubject(subject)) {
+                throw new IllegalStateException("Unable to insert subject " + subject.getUniqueId());
+            }
+            uniqueIdList.add(subject.getUniqueId());
+        }
+        return uniqueIdList;
+    }
+
+    private static void lookup(Datastore datastore, List<UUID> uniqueIdList, int lookups) throws Exception {
+        List<CompletableFuture<Optional<DatastoreSubject>>> futureList = new ArrayList<>(lookups);
+        for (int i = 0; i < lookups; i++) {
+            futureList.add(datastore.getLoginSubjectAsync(uniqueIdList.get(i % uniqueIdList.size())));
+        }
+        for (CompletableFuture<Optional<DatastoreSubject>> future : futureList) {
+            if (!future.get(1, TimeUnit.MINUTES).isPresent()) {
+                throw new IllegalStateException("Subject is missing");
+            }
+        }
+    }
+
+    private static void print(Result result) {
+        DatastoreExecutor.Stats stats = result.stats;
+        System.out.println(format("mode=%s threads=%s lookups=%s elapsed=%.1fms throughput=%.0f/s " +
+                        "averageWait=%.2fms maxWait=%.2fms",
+                stats.isVirtual() ? "virtual" : "platform",
+                stats.getThreadCount(),
+                result.lookups,
+                result.elapsed / 1e6,
+                result.lookups / (result.elapsed / 1e9),
+                stats.getAverageWaitTime() / 1e6,
+                stats.getMaxWaitTime() / 1e6
+        ));
+    }
+
+    private static class Result {
+
+        private final DatastoreExecutor.Stats stats;
+        private final int lookups;
+        private final long elapsed;
+
+        private Result(DatastoreExecutor.Stats stats, int lookups, long elapsed) {
+            this.stats = stats;
+            this.lookups = lookups;
+            this.elapsed = elapsed;
+        }
+    }
+}
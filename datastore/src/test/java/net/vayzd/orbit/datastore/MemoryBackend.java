@@ -0,0 +1,125 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import com.zaxxer.hikari.*;
+import lombok.*;
+import org.h2.jdbcx.*;
+
+import java.sql.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Backend keeping all data in an in-memory H2 database, meant for tests and
+ * benchmarks.
+ * <p>
+ * Every instance has its own database, which lives until the datastore using
+ * it is closed. Latency and failures can be injected into each executed
+ * statement, to exercise caching, batching and error paths under controlled
+ * database conditions.
+ */
+@Getter
+public class MemoryBackend implements DatastoreBackend {
+
+    private static final AtomicInteger DATABASE_COUNT = new AtomicInteger(0);
+
+    private final String databaseName = "orbit-" + DATABASE_COUNT.incrementAndGet();
+    // nanoseconds each statement is delayed by
+    private volatile long latency = 0;
+    // probability of each statement failing, from 0 to 1
+    private volatile double failureRate = 0;
+    // statements left until every statement fails, negative if they never do
+    private final AtomicLong statementsUntilFailure = new AtomicLong(-1);
+    private final AtomicLong statementCount = new AtomicLong(0);
+    private final AtomicLong injectedFailureCount = new AtomicLong(0);
+
+    public MemoryBackend() {
+    }
+
+    public MemoryBackend(long latency, TimeUnit unit, double failureRate) {
+        setLatency(latency, unit);
+        setFailureRate(failureRate);
+    }
+
+    public void setLatency(long latency, TimeUnit unit) {
+        checkArgument(latency >= 0, "Latency must be greater than or equal to 0");
+        checkNotNull(unit, "Unit can't be null");
+        this.latency = unit.toNanos(latency);
+    }
+
+    public void setFailureRate(double failureRate) {
+        checkArgument(failureRate >= 0 && failureRate <= 1, "Failure rate must be between 0 and 1");
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Lets the given amount of statements pass, every later statement fails.
+     *
+     * @param statements the amount of statements to pass, negative to never fail
+     */
+    public void failAfter(long statements) {
+        statementsUntilFailure.set(statements);
+    }
+
+    @Override
+    public String getName() {
+        return "Memory";
+    }
+
+    @Override
+    public DatastoreDialect getDialect() {
+        return DatastoreDialect.H2;
+    }
+
+    @Override
+    public HikariConfig createConfig(int maximumPoolSize) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(String.format("jdbc:h2:mem:%s;MODE=MySQL;DATABASE_TO_LOWER=TRUE", databaseName));
+        HikariConfig config = new HikariConfig();
+        config.setDataSource(new FaultInjectingDataSource(dataSource, this));
+        config.setMaximumPoolSize(maximumPoolSize);
+        // the database is dropped once its last connection is closed, so pooled connections are never retired
+        config.setMaxLifetime(0);
+        return config;
+    }
+
+    void beforeStatement() throws SQLException {
+        statementCount.incrementAndGet();
+        long delay = latency;
+        if (delay > 0) {
+            LockSupport.parkNanos(delay);
+        }
+        double rate = failureRate;
+        if (statementsUntilFailure.getAndUpdate(left -> left > 0 ? left - 1 : left) == 0
+                || rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            injectedFailureCount.incrementAndGet();
+            throw new SQLTransientConnectionException("Injected statement failure");
+        }
+    }
+}
@@ -0,0 +1,595 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import net.vayzd.orbit.datastore.group.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import static java.util.Arrays.*;
+import static net.vayzd.orbit.datastore.DatastoreFixtures.*;
+import static org.junit.Assert.*;
+
+public class OrbitDatastoreTest {
+
+    private static final Logger LOGGER = Logger.getLogger(OrbitDatastoreTest.class.getName());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MemoryBackend backend;
+    private Datastore datastore;
+
+    @Before
+    public void setUp() throws Exception {
+        backend = new MemoryBackend();
+        datastore = connect(new DatastoreSettings());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        datastore.close();
+    }
+
+    @Test
+    public void groupsInheritPermissionsOfTheirParents() throws Exception {
+        DatastoreGroup defaultGroup = newGroup("default", 100, "chat.*");
+        defaultGroup.setDefaultGroup(true);
+        DatastoreGroup admin = newGroup("admin", 1, "admin.kick");
+        admin.getParentSet().add("default");
+        assertTrue(datastore.insertGroup(defaultGroup));
+        assertTrue(datastore.insertGroup(admin));
+        fetchGroups("admin");
+        DatastoreGroup cached = datastore.getGroup("admin").orElseThrow(AssertionError::new);
+        assertTrue(cached.hasPermission("admin.kick"));
+        assertTrue(cached.hasPermission("chat.color"));
+        assertFalse(cached.hasPermission("admin.ban"));
+        assertEquals("default", datastore.getDefaultGroup().map(DatastoreGroup::getName).orElse(null));
+    }
+
+    @Test
+    public void groupChangesKeepUnrelatedGroups() throws Exception {
+        DatastoreGroup defaultGroup = newGroup("default", 100, "chat.*");
+        defaultGroup.setDefaultGroup(true);
+        DatastoreGroup admin = newGroup("admin", 1, "admin.kick");
+        admin.getParentSet().add("default");
+        assertTrue(datastore.insertGroup(defaultGroup));
+        assertTrue(datastore.insertGroup(admin));
+        assertTrue(datastore.insertGroup(newGroup("builder", 2, "build.*")));
+        fetchGroups("builder");
+        DatastoreGroup cachedAdmin = datastore.getGroup("admin").orElseThrow(AssertionError::new);
+        DatastoreGroup builder = datastore.getGroup("builder").orElseThrow(AssertionError::new);
+        Set<String> builderSet = builder.getEffectivePermissionSet();
+        assertTrue(builder.hasPermission("build.place"));
+        assertTrue(datastore.grantGroupPermission("default", "fly"));
+        assertSame(cachedAdmin, datastore.getGroup("admin").orElseThrow(AssertionError::new));
+        assertTrue(cachedAdmin.hasPermission("fly"));
+        assertSame(builder, datastore.getGroup("builder").orElseThrow(AssertionError::new));
+        assertSame(builderSet, builder.getEffectivePermissionSet());
+        assertTrue(builder.hasPermission("build.place"));
+        assertEquals(1, builder.getCheckCacheStats().hitCount());
+        Map<String, DatastoreGroup> groupMap = new HashMap<>();
+        for (String name : asList("default", "admin", "builder")) {
+            groupMap.put(name, datastore.getGroup(name).orElseThrow(AssertionError::new));
+        }
+        PermissionCalculator.Resolution full = PermissionCalculator.resolve(groupMap);
+        groupMap.forEach((name, group) ->
+                assertEquals(name, full.getEffectiveMap().get(name), group.getEffectivePermissionSet()));
+    }
+
+    @Test
+    public void groupsUseTheCheckCacheSizeOfTheirDatastore() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setCheckCacheSize(0);
+        datastore = connect(settings);
+        DatastoreGroup defaultGroup = newGroup("default", 100, "chat.*");
+        defaultGroup.setDefaultGroup(true);
+        assertTrue(datastore.insertGroup(defaultGroup));
+        fetchGroups("default");
+        DatastoreGroup cached = datastore.getGroup("default").orElseThrow(AssertionError::new);
+        assertTrue(cached.hasPermission("chat.color"));
+        assertTrue(cached.hasPermission("chat.color"));
+        assertEquals(0, cached.getCheckCacheStats().requestCount());
+        // groups outside of the datastore aren't affected by its settings
+        DatastoreGroup other = newGroup("other", 1, "chat.*");
+        assertTrue(other.hasPermission("chat.color"));
+        assertTrue(other.hasPermission("chat.color"));
+        assertEquals(1, other.getCheckCacheStats().hitCount());
+    }
+
+    @Test
+    public void subjectsAreStoredAndLoaded() throws Exception {
+        DatastoreSubject subject = newSubject("default", "fly");
+        assertTrue(datastore.insertSubject(subject));
+        DatastoreSubject loaded = datastore.getSubject(subject.getUniqueId()).orElseThrow(AssertionError::new);
+        assertEquals("default", loaded.getGroupName());
+        assertEquals(Collections.singleton("fly"), loaded.getPermissionSet());
+        assertTrue(datastore.grantSubjectPermission(subject.getUniqueId(), "build"));
+        assertEquals(new HashSet<>(asList("fly", "build")),
+                datastore.getSubject(subject.getUniqueId()).orElseThrow(AssertionError::new).getPermissionSet());
+        assertEquals(Collections.singletonList(subject.getUniqueId()), datastore.getSubjectIdsWithPermission("build"));
+        assertTrue(datastore.deleteSubject(loaded));
+        assertFalse(datastore.hasSubject(subject.getUniqueId()));
+    }
+
+    @Test
+    public void concurrentLoginLookupsShareQueries() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        // batches are only dispatched once they're full, so every lookup is part of one
+        settings.setLoginBatchWindow(TimeUnit.MINUTES.toMillis(1));
+        settings.setLoginBatchSize(25);
+        datastore = connect(settings);
+        DatastoreGroup defaultGroup = newGroup("default", 100);
+        defaultGroup.setDefaultGroup(true);
+        assertTrue(datastore.insertGroup(defaultGroup));
+        fetchGroups("default");
+        List<UUID> uniqueIdList = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            DatastoreSubject subject = newSubject("default");
+            assertTrue(datastore.insertSubject(subject));
+            uniqueIdList.add(subject.getUniqueId());
+        }
+        backend.setLatency(20, TimeUnit.MILLISECONDS);
+        long statementCount = backend.getStatementCount().get();
+        List<CompletableFuture<Optional<DatastoreSubject>>> futureList = new ArrayList<>();
+        for (UUID uniqueId : uniqueIdList) {
+            futureList.add(datastore.getLoginSubjectAsync(uniqueId));
+        }
+        for (int i = 0; i < uniqueIdList.size(); i++) {
+            assertEquals(uniqueIdList.get(i), futureList.get(i).get(5, TimeUnit.SECONDS)
+                    .map(DatastoreSubject::getUniqueId)
+                    .orElse(null));
+        }
+        assertEquals(uniqueIdList.size() / 25, backend.getStatementCount().get() - statementCount);
+    }
+
+    @Test
+    public void concurrentSubjectLookupsShareOneSelect() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setSubjectCacheSize(0);
+        datastore = connect(settings);
+        DatastoreGroup defaultGroup = newGroup("default", 100);
+        defaultGroup.setDefaultGroup(true);
+        assertTrue(datastore.insertGroup(defaultGroup));
+        fetchGroups("default");
+        DatastoreSubject subject = newSubject("default", "fly");
+        assertTrue(datastore.insertSubject(subject));
+        // long enough for every caller to arrive while the first select is still running
+        backend.setLatency(200, TimeUnit.MILLISECONDS);
+        int callers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<DatastoreSubject>>> futureList = new ArrayList<>();
+        long statementCount = backend.getStatementCount().get();
+        try {
+            for (int i = 0; i < callers; i++) {
+                futureList.add(executor.submit(() -> {
+                    start.await();
+                    return datastore.getSubject(subject.getUniqueId());
+                }));
+            }
+            start.countDown();
+            for (Future<Optional<DatastoreSubject>> future : futureList) {
+                assertEquals(subject.getUniqueId(), future.get(5, TimeUnit.SECONDS)
+                        .map(DatastoreSubject::getUniqueId)
+                        .orElse(null));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, backend.getStatementCount().get() - statementCount);
+    }
+
+    @Test
+    public void cancelledLoginLookupDoesNotCancelOtherCallers() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setSubjectCacheSize(0);
+        datastore = connect(settings);
+        DatastoreSubject subject = newSubject("default");
+        assertTrue(datastore.insertSubject(subject));
+        backend.setLatency(50, TimeUnit.MILLISECONDS);
+        CompletableFuture<Optional<DatastoreSubject>> first = datastore.getLoginSubjectAsync(subject.getUniqueId());
+        CompletableFuture<Optional<DatastoreSubject>> second = datastore.getLoginSubjectAsync(subject.getUniqueId());
+        assertTrue(first.cancel(false));
+        assertEquals(subject.getUniqueId(), second.get(5, TimeUnit.SECONDS)
+                .map(DatastoreSubject::getUniqueId)
+                .orElse(null));
+    }
+
+    @Test
+    public void cachedSubjectsSurviveDatabaseFailures() throws Exception {
+        DatastoreSubject subject = newSubject("default");
+        assertTrue(datastore.insertSubject(subject));
+        assertTrue(datastore.getSubject(subject.getUniqueId()).isPresent());
+        backend.setFailureRate(1);
+        assertTrue(datastore.getSubject(subject.getUniqueId()).isPresent());
+        assertFalse(datastore.getSubject(UUID.randomUUID()).isPresent());
+        assertFalse(datastore.insertSubject(newSubject("default")));
+        assertTrue(backend.getInjectedFailureCount().get() > 0);
+    }
+
+    @Test
+    public void subjectsOfLargeGroupsAreStreamedInPages() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setSubjectFetchSize(7);
+        datastore = connect(settings);
+        Set<UUID> uniqueIdSet = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            DatastoreSubject subject = newSubject(i % 5 == 0 ? "vip" : "default");
+            assertTrue(datastore.insertSubject(subject));
+            if (i % 5 != 0) {
+                uniqueIdSet.add(subject.getUniqueId());
+            }
+        }
+        Set<UUID> streamedSet = new HashSet<>();
+        datastore.forEachSubjectByGroup("default", subject -> assertTrue(streamedSet.add(subject.getUniqueId())));
+        assertEquals(uniqueIdSet, streamedSet);
+        assertEquals(40, datastore.countSubjectsByGroup("default"));
+        assertEquals(10, datastore.reassignSubjects("vip", "default"));
+        assertEquals(Collections.singletonMap("default", 50L), datastore.countSubjectsPerGroup());
+        assertEquals(50, datastore.grantPermissionToSubjectsByGroup("default", "event.join"));
+        assertTrue(datastore.hasSubjectWithPermission("event.join"));
+    }
+
+    @Test
+    public void failedChunksReportTheSubjectsChangedBefore() throws Exception {
+        for (int i = 0; i < 600; i++) {
+            assertTrue(datastore.insertSubject(newSubject("vip")));
+        }
+        // every chunk selects its end first, so the update of the second chunk fails
+        backend.failAfter(3);
+        try {
+            datastore.reassignSubjects("vip", "default");
+            fail("Failed chunk wasn't reported");
+        } catch (PartialUpdateException expected) {
+            assertEquals(500, expected.getChangedCount());
+        } finally {
+            backend.failAfter(-1);
+        }
+        assertEquals(500, datastore.countSubjectsByGroup("default"));
+        assertEquals(100, datastore.countSubjectsByGroup("vip"));
+    }
+
+    @Test
+    public void bulkUpdatesReachTheSubjectsOfOnlinePlayers() throws Exception {
+        DatastoreGroup defaultGroup = newGroup("default", 100, "chat.*");
+        defaultGroup.setDefaultGroup(true);
+        assertTrue(datastore.insertGroup(defaultGroup));
+        assertTrue(datastore.insertGroup(newGroup("vip", 1, "fly")));
+        fetchGroups("vip");
+        DatastoreSubject subject = newSubject("default", "build");
+        assertTrue(datastore.insertSubject(subject));
+        // held by the player until they leave
+        DatastoreSubject online = datastore.getLoginSubject(subject.getUniqueId()).orElseThrow(AssertionError::new);
+        assertEquals(1, datastore.grantPermissionToSubjectsByGroup("default", "event.join"));
+        assertTrue(online.hasPermission("event.join"));
+        assertEquals(1, datastore.reassignSubjects("default", "vip"));
+        assertEquals("vip", online.getGroupName());
+        assertEquals("vip", online.getGroup().getName());
+        assertTrue(online.hasPermission("fly"));
+        // what has been stored in bulk counts as persisted, so it can be revoked again
+        online.updatePermissionSet(Collections.singleton("build"));
+        assertTrue(datastore.updateSubject(online));
+        DatastoreSubject stored = datastore.getSubject(subject.getUniqueId()).orElseThrow(AssertionError::new);
+        assertEquals("vip", stored.getGroupName());
+        assertEquals(Collections.singleton("build"), stored.getPermissionSet());
+    }
+
+    @Test
+    public void streamsFailInsteadOfEndingEarly() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setSubjectFetchSize(7);
+        datastore = connect(settings);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(datastore.insertSubject(newSubject("default")));
+        }
+        Iterator<DatastoreSubject> iterator = datastore.streamSubjectsByGroup("default").iterator();
+        for (int i = 0; i < 7; i++) {
+            assertNotNull(iterator.next());
+        }
+        backend.setFailureRate(1);
+        try {
+            iterator.hasNext();
+            fail("Stream ended although the next page couldn't be loaded");
+        } catch (DatastoreException expected) {
+            assertNotNull(expected.getCause());
+        } finally {
+            backend.setFailureRate(0);
+        }
+    }
+
+    @Test
+    public void writeBehindFlushesQueuedWrites() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setSubjectCacheSize(0);
+        // only flushed on demand, so both writes are still pending
+        settings.setWriteBehindInterval(TimeUnit.MINUTES.toMillis(1));
+        datastore = connect(settings);
+        DatastoreSubject subject = newSubject("default", "fly");
+        assertTrue(datastore.insertSubject(subject));
+        subject.setGroupName("vip");
+        subject.updatePermissionSet(new HashSet<>(asList("fly", "chat.color")));
+        assertTrue(datastore.updateSubject(subject));
+        assertEquals(0, datastore.countSubjectsByGroup("vip"));
+        // flushes the pending write of the subject first
+        assertTrue(datastore.grantSubjectPermission(subject.getUniqueId(), "chat.bold"));
+        WriteBehindQueue.Stats stats = datastore.getWriteBehindStats();
+        assertEquals(2, stats.getQueuedCount());
+        assertEquals(1, stats.getCoalescedCount());
+        assertEquals(1, stats.getFlushedCount());
+        assertEquals(1, stats.getFlushCount());
+        DatastoreSubject stored = datastore.getSubject(subject.getUniqueId()).orElseThrow(AssertionError::new);
+        assertEquals("vip", stored.getGroupName());
+        assertEquals(new HashSet<>(asList("fly", "chat.color", "chat.bold")), stored.getPermissionSet());
+    }
+
+    @Test
+    public void publishedGroupChangesAreSavedToTheSnapshot() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setGroupSnapshotFile(new File(folder.getRoot(), "groups.snapshot"));
+        datastore = connect(settings);
+        DatastoreGroup defaultGroup = newGroup("default", 100, "chat.*");
+        defaultGroup.setDefaultGroup(true);
+        assertTrue(datastore.insertGroup(defaultGroup));
+        assertTrue(datastore.grantGroupPermission("default", "fly"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!isSaved(settings.getGroupSnapshotFile(), "default", "fly")) {
+            assertTrue("Snapshot wasn't saved in time", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void groupsAreServedFromTheSnapshotWhileTheDatabaseIsDown() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setGroupSnapshotFile(new File(folder.getRoot(), "groups.snapshot"));
+        datastore = connect(settings);
+        DatastoreGroup defaultGroup = newGroup("default", 100, "chat.*");
+        defaultGroup.setDefaultGroup(true);
+        DatastoreGroup admin = newGroup("admin", 1, "admin.kick");
+        admin.getParentSet().add("default");
+        assertTrue(datastore.insertGroup(defaultGroup));
+        assertTrue(datastore.insertGroup(admin));
+        fetchGroups("admin");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!settings.getGroupSnapshotFile().isFile()) {
+            assertTrue("Snapshot wasn't saved in time", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        datastore.close();
+        backend.setFailureRate(1);
+        datastore = OrbitDatastore.newDatastore(LOGGER, backend, new Thread(), 2, settings);
+        DatastoreGroup cached = datastore.getGroup("admin").orElseThrow(AssertionError::new);
+        assertTrue(cached.hasPermission("admin.kick"));
+        assertTrue(cached.hasPermission("chat.color"));
+        assertEquals("default", datastore.getDefaultGroup().map(DatastoreGroup::getName).orElse(null));
+        CompletableFuture<Throwable> connected = new CompletableFuture<>();
+        datastore.connect((result, error) -> connected.complete(error));
+        assertNotNull(connected.get(5, TimeUnit.SECONDS));
+        assertTrue(datastore.hasGroup("admin"));
+    }
+
+    @Test
+    public void changesMadeWhileFlushingAreStoredNextTime() throws Exception {
+        datastore = connectWriteBehind();
+        DatastoreSubject subject = newSubject("default", "chat.color");
+        assertTrue(datastore.insertSubject(subject));
+        awaitFlushed(1);
+        backend.setLatency(100, TimeUnit.MILLISECONDS);
+        long statementCount = backend.getStatementCount().get();
+        subject.updatePermissionSet(new HashSet<>(asList("chat.color", "chat.bold")));
+        assertTrue(datastore.updateSubject(subject));
+        awaitStatement(statementCount);
+        // changed while the previous state is flushed
+        subject.setGroupName("admin");
+        subject.updatePermissionSet(new HashSet<>(asList("chat.color", "chat.bold", "chat.italic")));
+        assertTrue(datastore.updateSubject(subject));
+        awaitFlushed(3);
+        backend.setLatency(0, TimeUnit.MILLISECONDS);
+        DatastoreSubject stored = datastore.getSubject(subject.getUniqueId()).orElseThrow(AssertionError::new);
+        assertEquals("admin", stored.getGroupName());
+        assertEquals(new HashSet<>(asList("chat.color", "chat.bold", "chat.italic")), stored.getPermissionSet());
+    }
+
+    @Test
+    public void revertedChangesReplaceTheQueuedWrite() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setSubjectCacheSize(0);
+        // only flushed once two writes are pending
+        settings.setWriteBehindInterval(TimeUnit.MINUTES.toMillis(1));
+        settings.setWriteBehindBatchSize(2);
+        datastore = connect(settings);
+        DatastoreSubject subject = newSubject("default", "chat.color");
+        assertTrue(datastore.insertSubject(subject));
+        assertTrue(datastore.insertSubject(newSubject("default")));
+        awaitFlushed(2);
+        subject.updatePermissionSet(new HashSet<>(asList("chat.color", "chat.bold")));
+        assertTrue(datastore.updateSubject(subject));
+        // changed back to the stored state before the queued write has been flushed
+        subject.updatePermissionSet(new HashSet<>(asList("chat.color")));
+        assertTrue(datastore.updateSubject(subject));
+        assertTrue(datastore.insertSubject(newSubject("default")));
+        awaitFlushed(4);
+        DatastoreSubject stored = datastore.getSubject(subject.getUniqueId()).orElseThrow(AssertionError::new);
+        assertEquals(new HashSet<>(asList("chat.color")), stored.getPermissionSet());
+    }
+
+    @Test
+    public void deletedSubjectsAreNotStoredByARunningFlush() throws Exception {
+        datastore = connectWriteBehind();
+        backend.setLatency(100, TimeUnit.MILLISECONDS);
+        long statementCount = backend.getStatementCount().get();
+        DatastoreSubject subject = newSubject("default", "chat.color");
+        assertTrue(datastore.insertSubject(subject));
+        awaitStatement(statementCount);
+        assertTrue(datastore.deleteSubject(subject));
+        awaitFlushed(1);
+        backend.setLatency(0, TimeUnit.MILLISECONDS);
+        assertFalse(datastore.hasSubject(subject.getUniqueId()));
+    }
+
+    @Test
+    public void rejectedRefreshTasksCompleteTheirCallbacks() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setRefreshLaneThreads(1);
+        settings.setExecutorQueueSize(1);
+        settings.setExecutorRejectionPolicy(DatastoreExecutor.RejectionPolicy.ABORT);
+        datastore = connect(settings);
+        backend.setLatency(200, TimeUnit.MILLISECONDS);
+        // one fetch is running and one is queued, so the lane is full
+        datastore.fetchAndCacheGroups();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!isOnlyTaskRunning(datastore.getExecutorStats().get(DatastoreLane.REFRESH))) {
+            assertTrue("Fetch wasn't started in time", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        datastore.fetchAndCacheGroups();
+        CompletableFuture<Throwable> connected = new CompletableFuture<>();
+        datastore.connect((result, error) -> connected.complete(error));
+        assertTrue(connected.get(5, TimeUnit.SECONDS) instanceof RejectedExecutionException);
+        CompletableFuture<Throwable> fetched = new CompletableFuture<>();
+        datastore.fetchAndCacheGroups((result, error) -> fetched.complete(error));
+        assertTrue(fetched.get(5, TimeUnit.SECONDS) instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void nodesLongerThanTheColumnAreRejected() throws Exception {
+        char[] chars = new char[DatastoreSchema.NODE_LENGTH + 1];
+        Arrays.fill(chars, 'a');
+        String node = new String(chars);
+        DatastoreSubject subject = newSubject("default", node);
+        assertFalse(datastore.insertSubject(subject));
+        assertFalse(datastore.hasSubject(subject.getUniqueId()));
+        assertTrue(datastore.insertGroup(newGroup("default", 100)));
+        assertFalse(datastore.grantGroupPermission("default", node));
+        assertTrue(datastore.grantGroupPermission("default", node.substring(1)));
+    }
+
+    @Test
+    public void changesMadeWhileUpdatingAreStoredNextTime() throws Exception {
+        DatastoreSubject subject = newSubject("default", "chat.color");
+        assertTrue(datastore.insertSubject(subject));
+        subject.updatePermissionSet(new HashSet<>(asList("chat.color", "chat.bold")));
+        backend.setLatency(100, TimeUnit.MILLISECONDS);
+        long statementCount = backend.getStatementCount().get();
+        CompletableFuture<Boolean> updated = datastore.updateSubjectAsync(subject);
+        awaitStatement(statementCount);
+        // changed while the previous state is written
+        subject.setGroupName("admin");
+        subject.updatePermissionSet(new HashSet<>(asList("chat.color", "chat.bold", "chat.italic")));
+        assertTrue(updated.get(5, TimeUnit.SECONDS));
+        backend.setLatency(0, TimeUnit.MILLISECONDS);
+        assertTrue(datastore.updateSubject(subject));
+        DatastoreSubject stored = datastore.getSubject(subject.getUniqueId()).orElseThrow(AssertionError::new);
+        assertEquals("admin", stored.getGroupName());
+        assertEquals(new HashSet<>(asList("chat.color", "chat.bold", "chat.italic")), stored.getPermissionSet());
+    }
+
+    private static boolean isSaved(File file, String name, String node) {
+        try {
+            DatastoreGroup group = file.isFile() ? GroupSnapshotFile.read(file).get(name) : null;
+            return group != null && group.getPermissionSet().contains(node);
+        } catch (IOException error) {
+            return false;
+        }
+    }
+
+    // every write is flushed on its own, as soon as it has been queued
+    private Datastore connectWriteBehind() throws Exception {
+        datastore.close();
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setSubjectCacheSize(0);
+        settings.setWriteBehindInterval(TimeUnit.MINUTES.toMillis(1));
+        settings.setWriteBehindBatchSize(1);
+        return connect(settings);
+    }
+
+    private void awaitFlushed(long flushedCount) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (datastore.getWriteBehindStats().getFlushedCount() < flushedCount
+                || datastore.getWriteBehindStats().getQueueDepth() > 0) {
+            assertTrue("Writes weren't flushed in time", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitStatement(long statementCount) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (backend.getStatementCount().get() == statementCount) {
+            assertTrue("Statement wasn't executed in time", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static boolean isOnlyTaskRunning(DatastoreExecutor.Stats stats) {
+        return stats.getActiveThreadCount() == 1 && stats.getQueueDepth() == 0
+                && stats.getCompletedCount() + 1 == stats.getSubmittedCount();
+    }
+
+    private Datastore connect(DatastoreSettings settings) throws Exception {
+        Datastore datastore = OrbitDatastore.newDatastore(LOGGER, backend, new Thread(), 2, settings);
+        CompletableFuture<Boolean> connected = new CompletableFuture<>();
+        datastore.connect((result, error) -> {
+            if (error != null) {
+                connected.completeExceptionally(error);
+            } else {
+                connected.complete(result);
+            }
+        });
+        assertTrue(connected.get(5, TimeUnit.SECONDS));
+        return datastore;
+    }
+
+    private void fetchGroups(String expected) throws InterruptedException {
+        datastore.fetchAndCacheGroups();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!datastore.getGroup(expected).isPresent() || !datastore.hasDefaultGroup()) {
+            assertTrue("Groups weren't cached in time", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        // the fetch has to be finished, so its statements aren't counted by later assertions
+        while (datastore.getExecutorStats().values().stream().anyMatch(stats ->
+                stats.getCompletedCount() + stats.getRejectedCount() < stats.getSubmittedCount())) {
+            assertTrue("Groups weren't fetched in time", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
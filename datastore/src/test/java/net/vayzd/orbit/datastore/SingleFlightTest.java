@@ -0,0 +1,132 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore;
+
+import org.junit.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 64;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<UUID, String> flight = new SingleFlight<>();
+        UUID uniqueId = UUID.randomUUID();
+        AtomicInteger selectCount = new AtomicInteger(0);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> resultList = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            resultList.add(executor.submit(() -> flight.execute(uniqueId, () -> {
+                selectCount.incrementAndGet();
+                release.await();
+                return "subject";
+            })));
+        }
+        awaitCoalesced(flight, CALLERS - 1);
+        release.countDown();
+        for (Future<String> result : resultList) {
+            assertEquals("subject", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, selectCount.get());
+    }
+
+    @Test
+    public void differentKeysLoadIndependently() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger selectCount = new AtomicInteger(0);
+        List<Future<String>> resultList = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            String name = "group" + (i % 4);
+            resultList.add(executor.submit(() -> flight.execute(name, () -> {
+                selectCount.incrementAndGet();
+                return name;
+            })));
+        }
+        for (int i = 0; i < CALLERS; i++) {
+            assertEquals("group" + (i % 4), resultList.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(selectCount.get() >= 4);
+    }
+
+    @Test
+    public void completedLoadIsNotCached() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger selectCount = new AtomicInteger(0);
+        assertEquals(Integer.valueOf(1), flight.execute("default", selectCount::incrementAndGet));
+        assertEquals(Integer.valueOf(2), flight.execute("default", selectCount::incrementAndGet));
+    }
+
+    @Test
+    public void errorIsSharedWithAllCallers() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger selectCount = new AtomicInteger(0);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> resultList = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            resultList.add(executor.submit(() -> flight.execute("default", () -> {
+                selectCount.incrementAndGet();
+                release.await();
+                throw new IllegalStateException("Connection refused");
+            })));
+        }
+        awaitCoalesced(flight, CALLERS - 1);
+        release.countDown();
+        for (Future<String> result : resultList) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("Expected the load error to be propagated");
+            } catch (ExecutionException error) {
+                assertTrue(error.getCause() instanceof IllegalStateException);
+            }
+        }
+        assertEquals(1, selectCount.get());
+    }
+
+    private void awaitCoalesced(SingleFlight<?, ?> flight, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.getCoalescedCount() < expected) {
+            assertTrue("Callers didn't join the in-flight load in time", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore.group;
+
+import com.google.common.collect.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static java.util.Arrays.*;
+import static net.vayzd.orbit.datastore.DatastoreFixtures.*;
+import static org.junit.Assert.*;
+
+public class PermissionCalculatorTest {
+
+    @Test
+    public void longChainsOfParentsAreResolved() {
+        Map<String, DatastoreGroup> groupMap = new HashMap<>();
+        groupMap.put("group0", newGroup("group0", 0, "chat.color"));
+        for (int i = 1; i < 100000; i++) {
+            DatastoreGroup group = newGroup("group" + i, i);
+            group.getParentSet().add("group" + (i - 1));
+            groupMap.put(group.getName(), group);
+        }
+        PermissionCalculator.Resolution resolution = PermissionCalculator.resolve(groupMap);
+        assertEquals(ImmutableSet.of("chat.color"), resolution.getEffectiveMap().get("group99999"));
+        assertTrue(resolution.getCycleList().isEmpty());
+    }
+
+    @Test
+    public void cyclesAreReportedAndShareTheirNodes() {
+        Map<String, DatastoreGroup> groupMap = groupMap(
+                group("a", "a.node", "b"),
+                group("b", "b.node", "c"),
+                group("c", "c.node", "a", "root"),
+                group("root", "root.node")
+        );
+        PermissionCalculator.Resolution resolution = PermissionCalculator.resolve(groupMap);
+        assertEquals(ImmutableList.of(ImmutableList.of("a", "b", "c")), resolution.getCycleList());
+        Set<String> cycleSet = ImmutableSet.of("a.node", "b.node", "c.node", "root.node");
+        for (String member : asList("a", "b", "c")) {
+            assertEquals(cycleSet, resolution.getEffectiveMap().get(member));
+        }
+        assertEquals(ImmutableSet.of("b.node", "c.node", "root.node"), resolution.getInheritedMap().get("a"));
+    }
+
+    @Test
+    public void groupsNextToACycleAreResolved() {
+        Map<String, DatastoreGroup> groupMap = groupMap(
+                group("a", "a.node", "b"),
+                group("b", "b.node", "a"),
+                group("child", "child.node", "a"),
+                group("other", "other.node", "other"),
+                group("root", "root.node")
+        );
+        PermissionCalculator.Resolution resolution = PermissionCalculator.resolve(groupMap);
+        assertEquals(1, resolution.getCycleList().size());
+        assertEquals(ImmutableSet.of("a.node", "b.node", "child.node"), resolution.getEffectiveMap().get("child"));
+        // a group inheriting from itself isn't a cycle
+        assertEquals(ImmutableSet.of("other.node"), resolution.getEffectiveMap().get("other"));
+        assertEquals(ImmutableSet.of("root.node"), resolution.getEffectiveMap().get("root"));
+        resolution.applyTo(groupMap);
+        assertTrue(groupMap.get("child").hasPermission("b.node"));
+        assertFalse(groupMap.get("root").hasPermission("a.node"));
+    }
+
+    @Test
+    public void incrementalResolutionMatchesAFullOne() {
+        Map<String, DatastoreGroup> groupMap = groupMap(
+                group("root", "root.node"),
+                group("a", "a.node", "root"),
+                group("b", "b.node", "a"),
+                group("other", "other.node"),
+                group("leaf", "leaf.node", "other")
+        );
+        PermissionCalculator.resolve(groupMap).applyTo(groupMap);
+        DatastoreGroup leaf = groupMap.get("leaf");
+        ImmutableSet<String> leafSet = leaf.getEffectivePermissionSet();
+        assertTrue(leaf.hasPermission("other.node"));
+        groupMap.get("a").updatePermissionSet(ImmutableSet.of("a.changed"));
+        PermissionCalculator.Resolution incremental = PermissionCalculator.resolve(groupMap,
+                Collections.singletonList("a"));
+        // only the changed group and its descendants are recomputed
+        assertEquals(ImmutableSet.of("a", "b"), incremental.getEffectiveMap().keySet());
+        incremental.applyTo(groupMap);
+        PermissionCalculator.Resolution full = PermissionCalculator.resolve(groupMap);
+        groupMap.forEach((name, group) ->
+                assertEquals(name, full.getEffectiveMap().get(name), group.getEffectivePermissionSet()));
+        assertTrue(groupMap.get("b").hasPermission("a.changed"));
+        assertFalse(groupMap.get("b").hasPermission("a.node"));
+        // untouched groups keep their compiled set and check cache
+        assertSame(leafSet, leaf.getEffectivePermissionSet());
+        assertTrue(leaf.hasPermission("other.node"));
+        assertEquals(1, leaf.getCheckCacheStats().hitCount());
+    }
+
+    private static DatastoreGroup group(String name, String node, String... parents) {
+        DatastoreGroup group = newGroup(name, 0, node);
+        group.getParentSet().addAll(asList(parents));
+        return group;
+    }
+
+    private static Map<String, DatastoreGroup> groupMap(DatastoreGroup... groups) {
+        Map<String, DatastoreGroup> groupMap = new HashMap<>();
+        for (DatastoreGroup group : groups) {
+            groupMap.put(group.getName(), group);
+        }
+        return groupMap;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of Orbit, licenced under the MIT Licence (MIT)
+ *
+ * Copyright (c) Vayzd Network <https://www.vayzd.net/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.vayzd.orbit.datastore.group;
+
+import org.junit.*;
+
+import static java.util.Arrays.*;
+import static org.junit.Assert.*;
+
+public class PermissionTrieTest {
+
+    @Test
+    public void exactNodesMatchOnlyThemselves() {
+        PermissionTrie trie = compile("chat.color", "fly");
+        assertTrue(trie.matches("chat.color"));
+        assertTrue(trie.matches("fly"));
+        assertFalse(trie.matches("chat"));
+        assertFalse(trie.matches("chat.color.red"));
+        assertFalse(trie.matches("chat.bold"));
+    }
+
+    @Test
+    public void wildcardSegmentsConsumeOneOrMoreSegments() {
+        PermissionTrie trie = compile("chat.*", "build.*.place");
+        assertTrue(trie.matches("chat.color"));
+        assertTrue(trie.matches("chat.color.red"));
+        assertTrue(trie.matches("build.world.place"));
+        assertTrue(trie.matches("build.world.nether.place"));
+        assertFalse(trie.matches("build.place"));
+        assertFalse(trie.matches("build.world.break"));
+    }
+
+    @Test
+    public void wildcardsDontMatchTheirParent() {
+        PermissionTrie trie = compile("chat.*", "*");
+        assertFalse(compile("chat.*").matches("chat"));
+        assertTrue(trie.matches("chat"));
+    }
+
+    @Test
+    public void globTailsMatchWithinAndAcrossSegments() {
+        PermissionTrie trie = compile("build.place*", "admin.k*k");
+        assertTrue(trie.matches("build.place"));
+        assertTrue(trie.matches("build.placeblock"));
+        assertTrue(trie.matches("build.place.stone"));
+        assertTrue(trie.matches("admin.kick"));
+        assertFalse(trie.matches("admin.kill"));
+        assertFalse(trie.matches("build.break"));
+    }
+
+    @Test
+    public void regexMetacharactersMatchLiterally() {
+        PermissionTrie trie = compile("chat.c?lor", "chat.(bold|italic)");
+        assertTrue(trie.matches("chat.c?lor"));
+        assertFalse(trie.matches("chat.color"));
+        assertTrue(trie.matches("chat.(bold|italic)"));
+        assertFalse(trie.matches("chat.bold"));
+    }
+
+    @Test
+    public void dollarPrefixedNodesMatchAsRegex() {
+        PermissionTrie trie = compile("$chat\\.(bold|italic)", "$[");
+        assertTrue(trie.matches("chat.bold"));
+        assertTrue(trie.matches("CHAT.Italic"));
+        assertFalse(trie.matches("chat.color"));
+        // invalid patterns match only themselves
+        assertTrue(trie.matches("$["));
+        assertFalse(trie.matches("["));
+    }
+
+    @Test
+    public void matchingIgnoresCase() {
+        PermissionTrie trie = compile("Chat.Color", "BUILD.*", "admin.K*");
+        assertTrue(trie.matches("chat.color"));
+        assertTrue(trie.matches("CHAT.COLOR"));
+        assertTrue(trie.matches("build.place"));
+        assertTrue(trie.matches("Admin.kick"));
+    }
+
+    @Test
+    public void exactEdgesDontShadowWildcards() {
+        PermissionTrie trie = compile("a.b", "a.*.d");
+        assertTrue(trie.matches("a.b"));
+        assertTrue(trie.matches("a.b.d"));
+        assertTrue(trie.matches("a.x.d"));
+        assertFalse(trie.matches("a.b.c"));
+    }
+
+    @Test
+    public void negatedNodesAreGrantedLiterally() {
+        // nodes only ever grant, '-chat.color' doesn't revoke what 'chat.*' grants
+        PermissionTrie trie = compile("chat.*", "-chat.color");
+        assertTrue(trie.matches("chat.color"));
+        assertTrue(trie.matches("-chat.color"));
+        assertFalse(trie.matches("-chat.bold"));
+    }
+
+    @Test
+    public void emptyTriesMatchNothing() {
+        assertFalse(PermissionTrie.EMPTY.matches(""));
+        assertFalse(PermissionTrie.EMPTY.matches("chat.color"));
+    }
+
+    private static PermissionTrie compile(String... permissions) {
+        return PermissionTrie.compile(asList(permissions));
+    }
+}
@@ -33,12 +33,20 @@ import net.vayzd.orbit.datastore.group.*;
 import net.vayzd.orbit.proxy.listener.*;
 
 import java.io.*;
+import java.util.concurrent.*;
 import java.util.logging.*;
 
+import static java.lang.String.*;
+
 public class OrbitProxyPlugin extends Plugin {
 
+    // seconds until connecting is retried while groups are served from the local snapshot
+    private static final long RECONNECT_DELAY = 30;
+
     @Getter
     private Datastore datastore;
+    @Getter
+    private long loginLookupTimeout;
 
     @Override
     public void onEnable() {
@@ -48,32 +56,18 @@ public class OrbitProxyPlugin extends Plugin {
             Configuration configuration = ConfigurationProvider.getProvider(YamlConfiguration.class).load(
                     new File(getDataFolder(), "config.yml")
             );
+            loginLookupTimeout = configuration.getLong("login-lookup-timeout", 10);
             datastore = OrbitDatastore.createDatastore(
                     getLogger(),
-                    new DatastoreCredentials(
-                            configuration.getString("database.hostname"),
-                            configuration.getInt("database.port"),
-                            configuration.getString("database.username"),
-                            configuration.getString("database.password"),
-                            configuration.getString("database.defaultDatabase")
-                    ),
+                    loadBackend(configuration),
                     Thread.currentThread(),
-                    configuration.getInt("pool-size")
+                    configuration.getInt("pool-size"),
+                    loadSettings(configuration)
             );
-            datastore.connect((result, error) -> {
-                if (error == null) {
-                    datastore.fetchAndCacheGroups();
-                    if (!datastore.hasDefaultGroup()) {
-                        datastore.insertGroup(newDefaultGroup(), (success, failure) -> {
-                            if (success != null && success && failure == null) {
-                                datastore.fetchAndCacheGroups(); // cache again.
-                            }
-                        });
-                    }
-                } else {
-                    shutdownDueToDatastoreFailure(error);
-                }
-            });
+            if (datastore.hasDefaultGroup()) {
+                getLogger().info("Serving groups from the local snapshot until the database is reachable...");
+            }
+            connect();
             getLogger().info("Successfully connected!");
         } catch (Exception error) {
             shutdownDueToDatastoreFailure(error);
@@ -87,6 +81,27 @@ public class OrbitProxyPlugin extends Plugin {
         });
     }
 
+    private void connect() {
+        datastore.connect((result, error) -> {
+            if (error == null) {
+                datastore.fetchAndCacheGroups();
+                if (!datastore.hasDefaultGroup()) {
+                    datastore.insertGroup(newDefaultGroup(), (success, failure) -> {
+                        if (success != null && success && failure == null) {
+                            datastore.fetchAndCacheGroups(); // cache again.
+                        }
+                    });
+                }
+            } else if (datastore.hasDefaultGroup()) {
+                // groups are served from the local snapshot meanwhile
+                getLogger().warning(format("Unable to connect to database, retrying in %s seconds...", RECONNECT_DELAY));
+                getProxy().getScheduler().schedule(this, this::connect, RECONNECT_DELAY, TimeUnit.SECONDS);
+            } else {
+                shutdownDueToDatastoreFailure(error);
+            }
+        });
+    }
+
     private void saveDefaultConfig() {
         if (!getDataFolder().exists()) {
             if (getDataFolder().mkdir()) {
@@ -103,6 +118,48 @@ public class OrbitProxyPlugin extends Plugin {
         }
     }
 
+    private DatastoreBackend loadBackend(Configuration configuration) {
+        if ("H2".equalsIgnoreCase(configuration.getString("backend", "MYSQL"))) {
+            return new H2Backend(
+                    new File(getDataFolder(), configuration.getString("embedded.file", "orbit")),
+                    configuration.getInt("embedded.cache-size", H2Backend.DEFAULT_CACHE_SIZE)
+            );
+        }
+        return new MySqlBackend(new DatastoreCredentials(
+                configuration.getString("database.hostname"),
+                configuration.getInt("database.port"),
+                configuration.getString("database.username"),
+                configuration.getString("database.password"),
+                configuration.getString("database.defaultDatabase")
+        ));
+    }
+
+    private DatastoreSettings loadSettings(Configuration configuration) {
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setCheckCacheSize(configuration.getLong("permission-cache-size", 4096));
+        settings.setSubjectCacheSize(configuration.getLong("subject-cache.size", 10000));
+        settings.setSubjectCacheExpireAfter(configuration.getLong("subject-cache.expire-after", 300));
+        settings.setSubjectCacheRefreshAfter(configuration.getLong("subject-cache.refresh-after", 60));
+        settings.setLoginBatchWindow(configuration.getLong("login-batch.window", 5));
+        settings.setLoginBatchSize(configuration.getInt("login-batch.size", 100));
+        settings.setWriteBehindInterval(configuration.getLong("write-behind.interval", 0));
+        settings.setWriteBehindBatchSize(configuration.getInt("write-behind.batch-size", 500));
+        settings.setSubjectFetchSize(configuration.getInt("subject-fetch-size", 1000));
+        String groupSnapshot = configuration.getString("group-snapshot", "groups.snapshot");
+        if (!groupSnapshot.isEmpty()) {
+            settings.setGroupSnapshotFile(new File(getDataFolder(), groupSnapshot));
+        }
+        settings.setVirtualThreads(configuration.getBoolean("executor.virtual-threads", false));
+        settings.setLoginLaneThreads(configuration.getInt("executor.login-threads", 0));
+        settings.setRefreshLaneThreads(configuration.getInt("executor.refresh-threads", 0));
+        settings.setBulkLaneThreads(configuration.getInt("executor.bulk-threads", 0));
+        settings.setExecutorQueueSize(configuration.getInt("executor.queue-size", 1024));
+        settings.setExecutorRejectionPolicy(DatastoreExecutor.RejectionPolicy.valueOf(
+                configuration.getString("executor.rejection-policy", "CALLER_RUNS").toUpperCase()
+        ));
+        return settings;
+    }
+
     private DatastoreGroup newDefaultGroup() {
         DatastoreGroup defaultGroup = new DatastoreGroup();
         defaultGroup.setName("default");
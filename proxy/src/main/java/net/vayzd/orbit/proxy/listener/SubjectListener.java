@@ -31,12 +31,14 @@ import net.md_5.bungee.api.connection.*;
 import net.md_5.bungee.api.event.*;
 import net.md_5.bungee.api.plugin.*;
 import net.md_5.bungee.event.*;
+import net.vayzd.orbit.datastore.*;
 import net.vayzd.orbit.datastore.group.*;
 import net.vayzd.orbit.proxy.*;
 import net.vayzd.orbit.proxy.event.*;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.logging.*;
 
 @RequiredArgsConstructor
 public class SubjectListener implements Listener {
@@ -56,35 +58,54 @@ public class SubjectListener implements Listener {
             return;
         }
         event.registerIntent(plugin);
-        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-            if (event.isCancelled()) {
+        final UUID uniqueId = event.getConnection().getUniqueId();
+        // batched with the lookups of all other players logging in meanwhile
+        CompletableFuture<Optional<DatastoreSubject>> lookup = DatastoreFutures.withDeadline(
+                plugin.getDatastore().getLoginSubjectAsync(uniqueId),
+                plugin.getLoginLookupTimeout(),
+                TimeUnit.SECONDS
+        );
+        Executor scheduler = task -> plugin.getProxy().getScheduler().runAsync(plugin, task);
+        DatastoreFutures.completeOn(lookup, scheduler).whenComplete((found, error) -> {
+            if (error != null) {
+                // logging in with the default group would silently strip the player's rank
+                plugin.getLogger().log(Level.WARNING, "Unable to look up subject '" + uniqueId + "'", error);
+                event.setCancelReason(UNEXPECTED_ERROR);
+                event.setCancelled(true);
                 event.completeIntent(plugin);
                 return;
             }
-            final UUID uniqueId = event.getConnection().getUniqueId();
-            DatastoreSubject subject = plugin.getDatastore().getSubject(uniqueId).orElseGet(() -> {
-                DatastoreSubject preset = new DatastoreSubject();
-                preset.setUniqueId(uniqueId);
-                plugin.getDatastore().getDefaultGroup().ifPresent(defaultGroup -> {
-                    preset.setGroup(defaultGroup);
-                    preset.setGroupName(defaultGroup.getName());
-                });
-                return preset;
+            completeLogin(event, uniqueId, found);
+        });
+    }
+
+    private void completeLogin(final LoginEvent event, final UUID uniqueId, Optional<DatastoreSubject> found) {
+        if (event.isCancelled()) {
+            event.completeIntent(plugin);
+            return;
+        }
+        DatastoreSubject subject = found.orElseGet(() -> {
+            DatastoreSubject preset = new DatastoreSubject();
+            preset.setUniqueId(uniqueId);
+            plugin.getDatastore().getDefaultGroup().ifPresent(defaultGroup -> {
+                preset.setGroup(defaultGroup);
+                preset.setGroupName(defaultGroup.getName());
             });
-            Callback<OrbitLoginEvent> callback = (result, error) -> {
-                try {
-                    if (result.isCancelled()) {
-                        event.setCancelReason(result.getCancelReason());
-                        event.setCancelled(result.isCancelled());
-                        return;
-                    }
-                    subjectMap.putIfAbsent(uniqueId, subject);
-                } finally {
-                    event.completeIntent(plugin);
-                }
-            };
-            plugin.getProxy().getPluginManager().callEvent(new OrbitLoginEvent(event, subject, callback));
+            return preset;
         });
+        Callback<OrbitLoginEvent> callback = (result, error) -> {
+            try {
+                if (result.isCancelled()) {
+                    event.setCancelReason(result.getCancelReason());
+                    event.setCancelled(result.isCancelled());
+                    return;
+                }
+                subjectMap.putIfAbsent(uniqueId, subject);
+            } finally {
+                event.completeIntent(plugin);
+            }
+        };
+        plugin.getProxy().getPluginManager().callEvent(new OrbitLoginEvent(event, subject, callback));
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
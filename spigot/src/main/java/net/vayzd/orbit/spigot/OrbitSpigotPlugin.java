@@ -30,44 +30,38 @@ import net.vayzd.orbit.datastore.group.*;
 import net.vayzd.orbit.spigot.listener.*;
 import org.bukkit.plugin.java.*;
 
+import java.io.*;
 import java.util.logging.*;
 
+import static java.lang.String.*;
+
 public class OrbitSpigotPlugin extends JavaPlugin {
 
+    // seconds until connecting is retried while groups are served from the local snapshot
+    private static final long RECONNECT_DELAY = 30;
+
     @Getter
     private Datastore datastore;
+    @Getter
+    private long loginLookupTimeout;
 
     @Override
     public void onEnable() {
         saveDefaultConfig();
+        loginLookupTimeout = getConfig().getLong("login-lookup-timeout", 10);
         getLogger().info("Connecting to database...");
         try {
             datastore = OrbitDatastore.createDatastore(
                     getLogger(),
-                    new DatastoreCredentials(
-                            getConfig().getString("database.hostname"),
-                            getConfig().getInt("database.port"),
-                            getConfig().getString("database.username"),
-                            getConfig().getString("database.password"),
-                            getConfig().getString("database.defaultDatabase")
-                    ),
+                    loadBackend(),
                     Thread.currentThread(),
-                    getConfig().getInt("pool-size")
+                    getConfig().getInt("pool-size"),
+                    loadSettings()
             );
-            datastore.connect((result, error) -> {
-                if (error == null) {
-                    datastore.fetchAndCacheGroups();
-                    if (!datastore.hasDefaultGroup()) {
-                        datastore.insertGroup(newDefaultGroup(), (success, failure) -> {
-                            if (success != null && success && failure == null) {
-                                datastore.fetchAndCacheGroups(); // cache again.
-                            }
-                        });
-                    }
-                } else {
-                    shutdownDueToDatastoreFailure(error);
-                }
-            });
+            if (datastore.hasDefaultGroup()) {
+                getLogger().info("Serving groups from the local snapshot until the database is reachable...");
+            }
+            connect();
             getLogger().info("Successfully connected!");
         } catch (Exception error) {
             shutdownDueToDatastoreFailure(error);
@@ -81,6 +75,69 @@ public class OrbitSpigotPlugin extends JavaPlugin {
         });
     }
 
+    private void connect() {
+        datastore.connect((result, error) -> {
+            if (error == null) {
+                datastore.fetchAndCacheGroups();
+                if (!datastore.hasDefaultGroup()) {
+                    datastore.insertGroup(newDefaultGroup(), (success, failure) -> {
+                        if (success != null && success && failure == null) {
+                            datastore.fetchAndCacheGroups(); // cache again.
+                        }
+                    });
+                }
+            } else if (datastore.hasDefaultGroup()) {
+                // groups are served from the local snapshot meanwhile
+                getLogger().warning(format("Unable to connect to database, retrying in %s seconds...", RECONNECT_DELAY));
+                getServer().getScheduler().runTaskLaterAsynchronously(this, this::connect, RECONNECT_DELAY * 20);
+            } else {
+                shutdownDueToDatastoreFailure(error);
+            }
+        });
+    }
+
+    private DatastoreBackend loadBackend() {
+        if ("H2".equalsIgnoreCase(getConfig().getString("backend", "MYSQL"))) {
+            return new H2Backend(
+                    new File(getDataFolder(), getConfig().getString("embedded.file", "orbit")),
+                    getConfig().getInt("embedded.cache-size", H2Backend.DEFAULT_CACHE_SIZE)
+            );
+        }
+        return new MySqlBackend(new DatastoreCredentials(
+                getConfig().getString("database.hostname"),
+                getConfig().getInt("database.port"),
+                getConfig().getString("database.username"),
+                getConfig().getString("database.password"),
+                getConfig().getString("database.defaultDatabase")
+        ));
+    }
+
+    private DatastoreSettings loadSettings() {
+        DatastoreSettings settings = new DatastoreSettings();
+        settings.setCheckCacheSize(getConfig().getLong("permission-cache-size", 4096));
+        settings.setSubjectCacheSize(getConfig().getLong("subject-cache.size", 10000));
+        settings.setSubjectCacheExpireAfter(getConfig().getLong("subject-cache.expire-after", 300));
+        settings.setSubjectCacheRefreshAfter(getConfig().getLong("subject-cache.refresh-after", 60));
+        settings.setLoginBatchWindow(getConfig().getLong("login-batch.window", 5));
+        settings.setLoginBatchSize(getConfig().getInt("login-batch.size", 100));
+        settings.setWriteBehindInterval(getConfig().getLong("write-behind.interval", 0));
+        settings.setWriteBehindBatchSize(getConfig().getInt("write-behind.batch-size", 500));
+        settings.setSubjectFetchSize(getConfig().getInt("subject-fetch-size", 1000));
+        String groupSnapshot = getConfig().getString("group-snapshot", "groups.snapshot");
+        if (!groupSnapshot.isEmpty()) {
+            settings.setGroupSnapshotFile(new File(getDataFolder(), groupSnapshot));
+        }
+        settings.setVirtualThreads(getConfig().getBoolean("executor.virtual-threads", false));
+        settings.setLoginLaneThreads(getConfig().getInt("executor.login-threads", 0));
+        settings.setRefreshLaneThreads(getConfig().getInt("executor.refresh-threads", 0));
+        settings.setBulkLaneThreads(getConfig().getInt("executor.bulk-threads", 0));
+        settings.setExecutorQueueSize(getConfig().getInt("executor.queue-size", 1024));
+        settings.setExecutorRejectionPolicy(DatastoreExecutor.RejectionPolicy.valueOf(
+                getConfig().getString("executor.rejection-policy", "CALLER_RUNS").toUpperCase()
+        ));
+        return settings;
+    }
+
     private DatastoreGroup newDefaultGroup() {
         DatastoreGroup defaultGroup = new DatastoreGroup();
         defaultGroup.setName("default");
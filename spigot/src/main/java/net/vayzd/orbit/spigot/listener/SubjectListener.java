@@ -55,7 +55,20 @@ public class SubjectListener implements Listener {
     public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
         if (event.getLoginResult().equals(AsyncPlayerPreLoginEvent.Result.ALLOWED)) {
             final UUID uniqueId = event.getUniqueId();
-            DatastoreSubject subject = plugin.getDatastore().getSubject(uniqueId).orElseGet(() -> {
+            Optional<DatastoreSubject> found;
+            try {
+                found = plugin.getDatastore().getLoginSubjectAsync(uniqueId)
+                        .get(plugin.getLoginLookupTimeout(), TimeUnit.SECONDS);
+            } catch (InterruptedException | ExecutionException | TimeoutException error) {
+                if (error instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                // logging in with the default group would silently strip the player's rank
+                plugin.getLogger().log(Level.WARNING, "Unable to look up subject '" + uniqueId + "'", error);
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, TextComponent.toLegacyText(UNEXPECTED_ERROR));
+                return;
+            }
+            DatastoreSubject subject = found.orElseGet(() -> {
                 DatastoreSubject preset = new DatastoreSubject();
                 preset.setUniqueId(uniqueId);
                 plugin.getDatastore().getDefaultGroup().ifPresent(defaultGroup -> {
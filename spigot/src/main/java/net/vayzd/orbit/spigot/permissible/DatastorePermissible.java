@@ -60,11 +60,13 @@ public class DatastorePermissible extends PermissibleBase {
 
     @Override
     public Set<PermissionAttachmentInfo> getEffectivePermissions() {
-        TreeSet<PermissionAttachmentInfo> permissionSet = new TreeSet<>();
         if (subject == null) {
-            return permissionSet;
+            return new HashSet<>();
         }
-        subject.getCombinedPermissionSet().forEach(permission -> {
+        // PermissionAttachmentInfo isn't comparable, so it can't be kept in a TreeSet
+        Set<String> combinedSet = subject.getCombinedPermissionSet();
+        Set<PermissionAttachmentInfo> permissionSet = new HashSet<>(combinedSet.size() * 4 / 3 + 1);
+        combinedSet.forEach(permission -> {
             if (permission != null) {
                 permissionSet.add(new PermissionAttachmentInfo(
                         this,